@@ -0,0 +1,29 @@
+package com.snoopiechat.backend.cluster;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Messaging between the backend nodes of a cluster. Messages are records of
+ * ids and DTOs, delivered asynchronously and in order per sending node; a
+ * transport over the network has to serialize them including the type of
+ * nested payloads. A bean of this type replaces the LoopbackClusterBus.
+ */
+public interface ClusterBus {
+
+    String nodeId();
+
+    /**
+     * Send to every other node
+     */
+    void broadcast(String topic, Object message);
+
+    /**
+     * Send to a single node, dropped if it isn't known (anymore)
+     */
+    void send(String nodeId, String topic, Object message);
+
+    /**
+     * @param handler called with the id of the sending node and the message
+     */
+    <T> void subscribe(String topic, Class<T> type, BiConsumer<String, T> handler);
+}
@@ -0,0 +1,172 @@
+package com.snoopiechat.backend.cluster;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The other nodes of the cluster that hold sessions of a user. Every node
+ * announces its first and last session of a user, and sends its whole list to
+ * a node that joins. Nodes that stay silent for chat.cluster.node-timeout-ms
+ * are dropped together with their users.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterUserRegistry {
+    private static final String JOIN_TOPIC = "users.join";
+    private static final String STATE_TOPIC = "users.state";
+    private static final String CHANGE_TOPIC = "users.change";
+    private static final String HEARTBEAT_TOPIC = "users.heartbeat";
+    private static final String LEAVE_TOPIC = "users.leave";
+
+    public record NodeUsers(Set<Long> userIds) {
+    }
+
+    public record UserChange(Long userId, boolean connected) {
+    }
+
+    public record Heartbeat() {
+    }
+
+    private final ClusterBus bus;
+
+    @Value("${chat.cluster.heartbeat-ms:5000}")
+    private long heartbeatMs;
+
+    @Value("${chat.cluster.node-timeout-ms:15000}")
+    private long nodeTimeoutMs;
+
+    private final Set<Long> localUsers = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Set<String>> nodesByUser = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> usersByNode = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+
+    @PostConstruct
+    void init() {
+        bus.subscribe(JOIN_TOPIC, NodeUsers.class, (node, users) -> {
+            replaceNode(node, users.userIds());
+            bus.send(node, STATE_TOPIC, new NodeUsers(Set.copyOf(localUsers)));
+        });
+        bus.subscribe(STATE_TOPIC, NodeUsers.class, (node, users) -> replaceNode(node, users.userIds()));
+        bus.subscribe(CHANGE_TOPIC, UserChange.class, (node, change) -> {
+            if (change.connected()) {
+                addUser(node, change.userId());
+            } else {
+                removeUser(node, change.userId());
+            }
+        });
+        bus.subscribe(HEARTBEAT_TOPIC, Heartbeat.class, (node, heartbeat) -> seen(node));
+        bus.subscribe(LEAVE_TOPIC, Heartbeat.class, (node, heartbeat) -> removeNode(node));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        bus.broadcast(JOIN_TOPIC, new NodeUsers(Set.copyOf(localUsers)));
+        executorService.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called when the first session of a user connected to this node
+     */
+    public void localUserConnected(Long userId) {
+        localUsers.add(userId);
+        bus.broadcast(CHANGE_TOPIC, new UserChange(userId, true));
+    }
+
+    /**
+     * Called when the last session of a user on this node disconnected
+     */
+    public void localUserDisconnected(Long userId) {
+        localUsers.remove(userId);
+        bus.broadcast(CHANGE_TOPIC, new UserChange(userId, false));
+    }
+
+    /**
+     * @return the other nodes holding sessions of the user
+     */
+    public Set<String> nodesOf(Long userId) {
+        Set<String> nodes = nodesByUser.get(userId);
+        return nodes == null ? Set.of() : Set.copyOf(nodes);
+    }
+
+    public boolean isConnectedElsewhere(Long userId) {
+        return nodesByUser.containsKey(userId);
+    }
+
+    private void heartbeat() {
+        bus.broadcast(HEARTBEAT_TOPIC, new Heartbeat());
+
+        long expired = System.currentTimeMillis() - nodeTimeoutMs;
+        lastSeen.forEach((node, time) -> {
+            if (time < expired) {
+                log.warn("Node {} timed out, dropping its {} users", node,
+                        usersByNode.getOrDefault(node, Set.of()).size());
+                removeNode(node);
+            }
+        });
+    }
+
+    private void seen(String node) {
+        lastSeen.put(node, System.currentTimeMillis());
+    }
+
+    private synchronized void replaceNode(String node, Set<Long> userIds) {
+        removeNode(node);
+        seen(node);
+        userIds.forEach(userId -> addUser(node, userId));
+    }
+
+    private synchronized void addUser(String node, Long userId) {
+        seen(node);
+        usersByNode.computeIfAbsent(node, n -> ConcurrentHashMap.newKeySet()).add(userId);
+        nodesByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(node);
+    }
+
+    private synchronized void removeUser(String node, Long userId) {
+        seen(node);
+        Set<Long> users = usersByNode.get(node);
+        if (users != null) {
+            users.remove(userId);
+        }
+        nodesByUser.computeIfPresent(userId, (id, nodes) -> {
+            nodes.remove(node);
+            return nodes.isEmpty() ? null : nodes;
+        });
+    }
+
+    private synchronized void removeNode(String node) {
+        lastSeen.remove(node);
+        Set<Long> users = usersByNode.remove(node);
+        if (users == null) {
+            return;
+        }
+        for (Long userId : users) {
+            nodesByUser.computeIfPresent(userId, (id, nodes) -> {
+                nodes.remove(node);
+                return nodes.isEmpty() ? null : nodes;
+            });
+        }
+    }
+
+    @PreDestroy
+    private void shutDown() {
+        executorService.shutdownNow();
+        bus.broadcast(LEAVE_TOPIC, new Heartbeat());
+    }
+}
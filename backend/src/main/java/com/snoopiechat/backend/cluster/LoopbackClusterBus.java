@@ -0,0 +1,99 @@
+package com.snoopiechat.backend.cluster;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * ClusterBus between nodes in the same JVM, e.g. several application contexts
+ * of a test. Nodes created with the same cluster name see each other, a node
+ * alone is a cluster of one. Every node handles its messages in order on its
+ * own thread, like it would from a network transport.
+ */
+@Slf4j
+public class LoopbackClusterBus implements ClusterBus, AutoCloseable {
+    private static final Map<String, Map<String, LoopbackClusterBus>> CLUSTERS = new ConcurrentHashMap<>();
+
+    private final String cluster;
+    private final String nodeId;
+    private final Map<String, List<BiConsumer<String, Object>>> handlers = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    public LoopbackClusterBus(String cluster, String nodeId) {
+        this.cluster = cluster;
+        this.nodeId = nodeId;
+        this.executor = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("cluster-" + nodeId).daemon().factory());
+        CLUSTERS.computeIfAbsent(cluster, name -> new ConcurrentHashMap<>()).put(nodeId, this);
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void broadcast(String topic, Object message) {
+        for (LoopbackClusterBus node : nodes().values()) {
+            if (node != this) {
+                node.receive(nodeId, topic, message);
+            }
+        }
+    }
+
+    @Override
+    public void send(String nodeId, String topic, Object message) {
+        LoopbackClusterBus node = nodes().get(nodeId);
+        if (node != null) {
+            node.receive(this.nodeId, topic, message);
+        } else {
+            log.debug("Dropping {} message to unknown node {}", topic, nodeId);
+        }
+    }
+
+    @Override
+    public <T> void subscribe(String topic, Class<T> type, BiConsumer<String, T> handler) {
+        handlers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>())
+                .add((from, message) -> handler.accept(from, type.cast(message)));
+    }
+
+    private void receive(String from, String topic, Object message) {
+        List<BiConsumer<String, Object>> topicHandlers = handlers.get(topic);
+        if (topicHandlers == null) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                for (BiConsumer<String, Object> handler : topicHandlers) {
+                    try {
+                        handler.accept(from, message);
+                    } catch (Exception e) {
+                        log.error("Failed to handle {} message from node {}", topic, from, e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Node is shutting down
+        }
+    }
+
+    private Map<String, LoopbackClusterBus> nodes() {
+        return CLUSTERS.getOrDefault(cluster, Map.of());
+    }
+
+    @Override
+    public void close() {
+        CLUSTERS.computeIfPresent(cluster, (name, nodes) -> {
+            nodes.remove(nodeId, this);
+            return nodes.isEmpty() ? null : nodes;
+        });
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,30 @@
+package com.snoopiechat.backend.config;
+
+import java.util.Map;
+
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.util.MimeType;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes and reads STOMP bodies as CBOR, with dates as numeric arrays instead
+ * of ISO strings. It only applies to messages carrying {@link #CONTENT_TYPE},
+ * which UserSessionRegistry sets for sessions that asked for it; all others
+ * stay JSON.
+ *
+ * The STOMP handler sends binary WebSocket frames only for
+ * application/octet-stream bodies, so that is the content type, with the
+ * format as parameter.
+ */
+public class CborMessageConverter extends MappingJackson2MessageConverter {
+    public static final MimeType CONTENT_TYPE = new MimeType("application", "octet-stream", Map.of("codec", "cbor"));
+
+    public CborMessageConverter() {
+        super(Jackson2ObjectMapperBuilder.cbor()
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build(), CONTENT_TYPE);
+        setStrictContentTypeMatch(true);
+    }
+}
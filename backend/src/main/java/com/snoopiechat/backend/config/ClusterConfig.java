@@ -0,0 +1,28 @@
+package com.snoopiechat.backend.config;
+
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.snoopiechat.backend.cluster.ClusterBus;
+import com.snoopiechat.backend.cluster.LoopbackClusterBus;
+
+@Configuration
+public class ClusterConfig {
+
+    /**
+     * In-process bus unless another ClusterBus is defined. Without a cluster name
+     * the node runs on its own.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean(ClusterBus.class)
+    public LoopbackClusterBus clusterBus(
+            @Value("${chat.cluster.name:}") String clusterName,
+            @Value("${chat.cluster.node-id:}") String nodeId) {
+        String node = nodeId.isEmpty() ? UUID.randomUUID().toString() : nodeId;
+        return new LoopbackClusterBus(clusterName.isEmpty() ? node : clusterName, node);
+    }
+}
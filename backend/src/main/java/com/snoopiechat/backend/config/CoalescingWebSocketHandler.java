@@ -0,0 +1,246 @@
+package com.snoopiechat.backend.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Combines the STOMP frames queued for a session into a single WebSocket
+ * message: frames handed over while a write to the session is in flight are
+ * sent together with the next write (clients parse several NUL terminated
+ * frames from one message). Consecutive text or binary frames are combined.
+ * Writes run on {@code executor}, so a slow client only holds up its own
+ * session; it is disconnected once its queue exceeds {@code bufferSizeLimit}
+ * bytes or a write takes longer than {@code sendTimeLimit} ms. The limits are
+ * checked when a frame is queued behind a running write and on every call of
+ * {@link #checkLimits()}.
+ *
+ * Sessions that negotiated compression (see MessageEncodingInterceptor) get
+ * text batches above the threshold of {@code compressor} as binary zlib
+ * messages instead.
+ */
+@Slf4j
+public class CoalescingWebSocketHandler extends WebSocketHandlerDecorator {
+    private final Executor executor;
+    private final int maxBatchBytes;
+    private final int bufferSizeLimit;
+    private final long sendTimeLimit;
+    private final MessageCompressor compressor;
+    private final Counter frames;
+    private final Counter writes;
+    private final Counter slowConsumers;
+    // Bytes queued over all sessions
+    private final AtomicLong totalQueuedBytes = new AtomicLong();
+    private final Map<String, CoalescingSession> sessions = new ConcurrentHashMap<>();
+
+    public CoalescingWebSocketHandler(WebSocketHandler delegate, Executor executor, int maxBatchBytes,
+            int bufferSizeLimit, long sendTimeLimit, MessageCompressor compressor, MeterRegistry meterRegistry) {
+        super(delegate);
+        this.executor = executor;
+        this.maxBatchBytes = maxBatchBytes;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.sendTimeLimit = sendTimeLimit;
+        this.compressor = compressor;
+        this.frames = meterRegistry.counter("chat.ws.outbound.frames");
+        this.writes = meterRegistry.counter("chat.ws.outbound.writes");
+        this.slowConsumers = meterRegistry.counter("chat.ws.outbound.slow.consumers");
+        Gauge.builder("chat.ws.outbound.queued.bytes", totalQueuedBytes, AtomicLong::get).register(meterRegistry);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        // Later callbacks may pass the plain session, the STOMP handler finds its own by id
+        CoalescingSession coalescing = new CoalescingSession(session);
+        sessions.put(session.getId(), coalescing);
+        super.afterConnectionEstablished(coalescing);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        CoalescingSession coalescing = sessions.remove(session.getId());
+        if (coalescing != null) {
+            coalescing.discard();
+        }
+        super.afterConnectionClosed(session, closeStatus);
+    }
+
+    /**
+     * Close the sessions whose write has been running for longer than the send
+     * time limit or whose queue exceeds the buffer size limit
+     */
+    public void checkLimits() {
+        sessions.values().forEach(CoalescingSession::checkLimits);
+    }
+
+    private class CoalescingSession extends WebSocketSessionDecorator {
+        private final Queue<WebSocketMessage<?>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queuedBytes = new AtomicInteger();
+        // Set while a flush is scheduled or running, there is at most one per session
+        private final AtomicBoolean flushing = new AtomicBoolean();
+        private final boolean compress;
+        private volatile long sendStartTime;
+        private volatile boolean closed;
+
+        CoalescingSession(WebSocketSession session) {
+            super(session);
+            this.compress = Boolean.TRUE.equals(session.getAttributes().get(MessageEncodingInterceptor.COMPRESSION));
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            if (closed) {
+                return;
+            }
+            queue.add(message);
+            addQueued(message.getPayloadLength());
+            frames.increment();
+            if (closed) {
+                discard(); // closed meanwhile, don't leave the message counted
+                return;
+            }
+
+            if (flushing.compareAndSet(false, true)) {
+                executor.execute(this::flush);
+            } else {
+                checkLimits();
+            }
+        }
+
+        private void flush() {
+            do {
+                try {
+                    drain();
+                } catch (IOException | RuntimeException e) {
+                    log.debug("Failed to write to session {}", getId(), e);
+                    discard();
+                }
+                flushing.set(false);
+            } while (!queue.isEmpty() && !closed && flushing.compareAndSet(false, true));
+        }
+
+        private void drain() throws IOException {
+            StringBuilder text = new StringBuilder();
+            ByteArrayOutputStream binary = new ByteArrayOutputStream();
+            boolean binaryBatch = false;
+            int batchBytes = 0;
+
+            WebSocketMessage<?> message;
+            while (!closed && (message = queue.peek()) != null) {
+                int length = message.getPayloadLength();
+                boolean isBinary = message instanceof BinaryMessage;
+                boolean combinable = isBinary || message instanceof TextMessage;
+                if (combinable && (batchBytes == 0
+                        || (isBinary == binaryBatch && batchBytes + length <= maxBatchBytes))) {
+                    queue.poll();
+                    addQueued(-length);
+                    if (isBinary) {
+                        ByteBuffer payload = ((BinaryMessage) message).getPayload().duplicate();
+                        byte[] bytes = new byte[payload.remaining()];
+                        payload.get(bytes);
+                        binary.writeBytes(bytes);
+                    } else {
+                        text.append(((TextMessage) message).getPayload());
+                    }
+                    binaryBatch = isBinary;
+                    batchBytes += length;
+                    continue;
+                }
+
+                if (batchBytes > 0) {
+                    writeBatch(binaryBatch, text, binary);
+                    batchBytes = 0;
+                } else {
+                    // Pings and pongs go out on their own
+                    queue.poll();
+                    addQueued(-length);
+                    write(message);
+                }
+            }
+
+            if (batchBytes > 0) {
+                writeBatch(binaryBatch, text, binary);
+            }
+        }
+
+        private void writeBatch(boolean binaryBatch, StringBuilder text, ByteArrayOutputStream binary)
+                throws IOException {
+            if (binaryBatch) {
+                write(new BinaryMessage(binary.toByteArray()));
+                binary.reset();
+            } else {
+                byte[] compressed = compress
+                        ? compressor.compress(text.toString().getBytes(StandardCharsets.UTF_8))
+                        : null;
+                write(compressed != null ? new BinaryMessage(compressed) : new TextMessage(text));
+                text.setLength(0);
+            }
+        }
+
+        private void write(WebSocketMessage<?> message) throws IOException {
+            sendStartTime = System.currentTimeMillis();
+            try {
+                getDelegate().sendMessage(message);
+                writes.increment();
+            } finally {
+                sendStartTime = 0;
+            }
+        }
+
+        private void checkLimits() {
+            long start = sendStartTime;
+            if (start > 0 && System.currentTimeMillis() - start > sendTimeLimit) {
+                closeSlowConsumer("send time " + (System.currentTimeMillis() - start) + " ms");
+            } else if (queuedBytes.get() > bufferSizeLimit) {
+                closeSlowConsumer("buffer size " + queuedBytes.get() + " bytes");
+            }
+        }
+
+        private void closeSlowConsumer(String reason) {
+            if (closed) {
+                return;
+            }
+            log.warn("Closing slow WebSocket session {}: {} exceeded", getId(), reason);
+            slowConsumers.increment();
+            discard();
+            try {
+                getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.debug("Failed to close session {}", getId(), e);
+            }
+        }
+
+        private void addQueued(int bytes) {
+            queuedBytes.addAndGet(bytes);
+            totalQueuedBytes.addAndGet(bytes);
+        }
+
+        private void discard() {
+            closed = true;
+            queue.clear();
+            totalQueuedBytes.addAndGet(-queuedBytes.getAndSet(0));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.snoopiechat.backend.config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import com.snoopiechat.backend.storage.MessageShards;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * SQLite access split by what SQLite can do concurrently: WAL mode, a single
+ * writer connection, and a pool of read-only connections for read-only
+ * transactions (Spring Data repository reads are read-only by default).
+ * Every message shard gets its own pair of pools; shard 0 is the configured
+ * datasource, the others use chat.storage.shard-url.
+ */
+@Configuration
+public class DataSourceConfig {
+    private static final String READ_ONLY_OPEN_MODE = "1"; // SQLITE_OPEN_READONLY
+
+    @Value("${chat.datasource.reader-pool-size:4}")
+    private int readerPoolSize;
+
+    @Value("${chat.datasource.busy-timeout-ms:5000}")
+    private int busyTimeoutMs;
+
+    @Value("${chat.storage.shards:1}")
+    private int shardCount;
+
+    @Value("${chat.storage.shard-url:jdbc:sqlite:snoopiechat-shard-%d.db}")
+    private String shardUrl;
+
+    @Bean
+    public ShardPools shardPools(DataSourceProperties properties, MeterRegistry meterRegistry) {
+        MicrometerMetricsTrackerFactory metrics = new MicrometerMetricsTrackerFactory(meterRegistry);
+        List<HikariDataSource> writers = new ArrayList<>();
+        List<HikariDataSource> readers = new ArrayList<>();
+
+        for (int shard = 0; shard < shardCount; shard++) {
+            String url = shard == 0 ? properties.determineUrl() : String.format(shardUrl, shard);
+            String suffix = shard == 0 ? "" : "-" + shard;
+            writers.add(writerPool(properties, url, "sqlite-writer" + suffix, metrics));
+            readers.add(readerPool(properties, url, "sqlite-reader" + suffix, metrics));
+        }
+        return new ShardPools(writers, readers);
+    }
+
+    /**
+     * The lazy proxy defers fetching a connection until the first statement, by
+     * which time the transaction manager has marked it read-only or not and the
+     * caller has picked the shard.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardPools shardPools) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(shardRouting(shardPools.writers()));
+        dataSource.setReadOnlyDataSource(shardRouting(shardPools.readers()));
+        return dataSource;
+    }
+
+    /**
+     * Boot migrates the main database; the other shards get the same migrations
+     */
+    @Bean
+    public FlywayMigrationStrategy shardMigrationStrategy(ShardPools shardPools) {
+        return flyway -> {
+            flyway.migrate();
+            for (int shard = 1; shard < shardPools.count(); shard++) {
+                Flyway.configure()
+                    .configuration(flyway.getConfiguration())
+                    .dataSource(shardPools.writers().get(shard))
+                    .load()
+                    .migrate();
+            }
+        };
+    }
+
+    private HikariDataSource writerPool(DataSourceProperties properties, String url, String name,
+            MicrometerMetricsTrackerFactory metrics) {
+        HikariDataSource dataSource = pool(properties, url, name, metrics);
+        // A second write connection would only wait on the database lock
+        dataSource.setMaximumPoolSize(1);
+        dataSource.setDataSourceProperties(sqliteProperties(Map.of(
+            "journal_mode", "WAL",
+            "synchronous", "NORMAL"
+        )));
+        return dataSource;
+    }
+
+    private HikariDataSource readerPool(DataSourceProperties properties, String url, String name,
+            MicrometerMetricsTrackerFactory metrics) {
+        HikariDataSource dataSource = pool(properties, url, name, metrics);
+        dataSource.setMaximumPoolSize(readerPoolSize);
+        dataSource.setReadOnly(true);
+        // WAL readers see the last commit without waiting for the writer
+        dataSource.setDataSourceProperties(sqliteProperties(Map.of("open_mode", READ_ONLY_OPEN_MODE)));
+        return dataSource;
+    }
+
+    private HikariDataSource pool(DataSourceProperties properties, String url, String name,
+            MicrometerMetricsTrackerFactory metrics) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+            .type(HikariDataSource.class)
+            .url(url)
+            .build();
+        dataSource.setPoolName(name);
+        dataSource.setMetricsTrackerFactory(metrics);
+        return dataSource;
+    }
+
+    private static DataSource shardRouting(List<HikariDataSource> pools) {
+        AbstractRoutingDataSource routing = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return MessageShards.current();
+            }
+        };
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < pools.size(); shard++) {
+            targets.put(shard, pools.get(shard));
+        }
+        routing.setTargetDataSources(targets);
+        routing.setLenientFallback(false);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    private Properties sqliteProperties(Map<String, String> pragmas) {
+        Properties properties = new Properties();
+        properties.setProperty("busy_timeout", Integer.toString(busyTimeoutMs));
+        properties.putAll(pragmas);
+        return properties;
+    }
+}
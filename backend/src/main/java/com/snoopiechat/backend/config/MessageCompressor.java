@@ -0,0 +1,68 @@
+package com.snoopiechat.backend.config;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * zlib compression of outbound WebSocket messages of at least
+ * {@code minBytes}, for sessions that asked for it. Ratio and cost are
+ * published as chat.ws.compression.bytes.out / chat.ws.compression.bytes.in
+ * and chat.ws.compression.time.
+ */
+public class MessageCompressor {
+    private final int minBytes;
+    private final int level;
+    private final Counter bytesIn;
+    private final Counter bytesOut;
+    private final Counter skipped;
+    private final Timer time;
+
+    public MessageCompressor(int minBytes, int level, MeterRegistry meterRegistry) {
+        this.minBytes = minBytes;
+        this.level = level;
+        this.bytesIn = meterRegistry.counter("chat.ws.compression.bytes.in");
+        this.bytesOut = meterRegistry.counter("chat.ws.compression.bytes.out");
+        this.skipped = meterRegistry.counter("chat.ws.compression.skipped");
+        this.time = meterRegistry.timer("chat.ws.compression.time");
+    }
+
+    /**
+     * @return the compressed payload, null if it is below the threshold or
+     *         didn't get smaller
+     */
+    public byte[] compress(byte[] payload) {
+        if (payload.length < minBytes) {
+            skipped.increment();
+            return null;
+        }
+
+        long start = System.nanoTime();
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2);
+            byte[] buffer = new byte[Math.min(payload.length, 8192)];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            byte[] compressed = out.toByteArray();
+            time.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            if (compressed.length >= payload.length) {
+                skipped.increment();
+                return null;
+            }
+            bytesIn.increment(payload.length);
+            bytesOut.increment(compressed.length);
+            return compressed;
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.snoopiechat.backend.config;
+
+import java.util.Map;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Picks the encoding of the messages sent to a session from the query
+ * parameters of the handshake: encoding=cbor for CBOR bodies, compression=deflate
+ * for compressed JSON (ws-chat-native?compression=deflate), when compression is
+ * enabled. Only registered on the native endpoint, SockJS can't carry binary
+ * frames.
+ */
+public class MessageEncodingInterceptor implements HandshakeInterceptor {
+    public static final String ATTRIBUTE = "content_type";
+    public static final String COMPRESSION = "compression";
+
+    private final boolean compressionEnabled;
+
+    public MessageEncodingInterceptor(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    @Override
+    public boolean beforeHandshake(@NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response,
+            @NonNull WebSocketHandler wsHandler, @NonNull Map<String, Object> attributes) {
+        MultiValueMap<String, String> params = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams();
+        if ("cbor".equals(params.getFirst("encoding"))) {
+            attributes.put(ATTRIBUTE, CborMessageConverter.CONTENT_TYPE);
+        } else if (compressionEnabled && "deflate".equals(params.getFirst("compression"))) {
+            // CBOR sessions already use binary frames, a compressed one couldn't be told apart
+            attributes.put(COMPRESSION, true);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(@NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response,
+            @NonNull WebSocketHandler wsHandler, Exception exception) {
+    }
+}
@@ -30,8 +30,10 @@ public class SecurityConfig {
                         .requestMatchers("/error", "/register", "/login", "/pki/register", "/pki/upload/key-bundle")
                         .permitAll() // open endpoint
                 .requestMatchers("/health", "/pki-status").permitAll()  // open endpoint
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/**").authenticated()  // metrics show the traffic, only for logged in clients
                 .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()  // OpenAPI Docs
-                        .requestMatchers("/ws-chat/**").permitAll()
+                        .requestMatchers("/ws-chat/**", "/ws-chat-native").permitAll()
                 .anyRequest().authenticated()             // everything else needs authentication
             )
                 // .httpBasic(Customizer.withDefaults())
@@ -0,0 +1,20 @@
+package com.snoopiechat.backend.config;
+
+import java.util.List;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Writer and reader pool of every message shard, indexed by shard
+ */
+public record ShardPools(List<HikariDataSource> writers, List<HikariDataSource> readers) implements AutoCloseable {
+    public int count() {
+        return writers.size();
+    }
+
+    @Override
+    public void close() {
+        writers.forEach(HikariDataSource::close);
+        readers.forEach(HikariDataSource::close);
+    }
+}
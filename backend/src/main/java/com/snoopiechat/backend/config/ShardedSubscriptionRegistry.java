@@ -0,0 +1,87 @@
+package com.snoopiechat.backend.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Subscription registry of the simple broker, split into one
+ * {@link DefaultSubscriptionRegistry} per shard by the user id of the
+ * subscribing session. Messages for a user destination
+ * ({@code /queue/messages-user<sessionId>}, see UserSessionRegistry) are only
+ * matched against the shard of that session, so the lookup cost and the
+ * destination cache of a shard scale with its own sessions instead of all
+ * connected ones, and registrations on different shards don't contend. Other
+ * destinations are looked up in every shard.
+ */
+public class ShardedSubscriptionRegistry implements SubscriptionRegistry {
+    private static final String USER_SUFFIX = "-user";
+
+    private final DefaultSubscriptionRegistry[] shards;
+    private final Map<String, Integer> sessionShards = new ConcurrentHashMap<>();
+
+    public ShardedSubscriptionRegistry(int shardCount, int cacheLimit) {
+        shards = new DefaultSubscriptionRegistry[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new DefaultSubscriptionRegistry();
+            shards[i].setCacheLimit(cacheLimit);
+        }
+    }
+
+    @Override
+    public void registerSubscription(Message<?> subscribeMessage) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(subscribeMessage.getHeaders());
+        if (sessionId == null) {
+            return;
+        }
+        int shard = sessionShards.computeIfAbsent(sessionId, id -> shardOf(subscribeMessage, id));
+        shards[shard].registerSubscription(subscribeMessage);
+    }
+
+    @Override
+    public void unregisterSubscription(Message<?> unsubscribeMessage) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(unsubscribeMessage.getHeaders());
+        Integer shard = sessionId == null ? null : sessionShards.get(sessionId);
+        if (shard != null) {
+            shards[shard].unregisterSubscription(unsubscribeMessage);
+        }
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        Integer shard = sessionShards.remove(sessionId);
+        if (shard != null) {
+            shards[shard].unregisterAllSubscriptions(sessionId);
+        }
+    }
+
+    @Override
+    public MultiValueMap<String, String> findSubscriptions(Message<?> message) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination != null) {
+            int suffix = destination.lastIndexOf(USER_SUFFIX);
+            Integer shard = suffix < 0 ? null : sessionShards.get(destination.substring(suffix + USER_SUFFIX.length()));
+            if (shard != null) {
+                return shards[shard].findSubscriptions(message);
+            }
+        }
+
+        MultiValueMap<String, String> result = new LinkedMultiValueMap<>();
+        for (DefaultSubscriptionRegistry shard : shards) {
+            result.addAll(shard.findSubscriptions(message));
+        }
+        return result;
+    }
+
+    private int shardOf(Message<?> message, String sessionId) {
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+        Object userId = attributes == null ? null : attributes.get("user_id");
+        return Math.floorMod(userId != null ? userId.hashCode() : sessionId.hashCode(), shards.length);
+    }
+}
@@ -1,13 +1,39 @@
 package com.snoopiechat.backend.config;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.lang.NonNull;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
@@ -15,11 +41,95 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Value("${frontend.origin}")
     private String frontendOrigin;
 
+    // Stays within the 8 KiB default message buffer of common WebSocket client libraries
+    @Value("${chat.broker.max-batch-bytes:8192}")
+    private int maxBatchBytes;
+
+    @Value("${chat.broker.send-buffer-limit-bytes:524288}")
+    private int sendBufferLimit;
+
+    @Value("${chat.broker.send-time-limit-ms:10000}")
+    private int sendTimeLimit;
+
+    @Value("${chat.websocket.message-size-limit-bytes:65536}")
+    private int messageSizeLimit;
+
+    // Clients of the native endpoint may then ask for compressed messages
+    @Value("${chat.websocket.compression.enabled:false}")
+    private boolean compressionEnabled;
+
+    // Smaller messages aren't worth the CPU
+    @Value("${chat.websocket.compression.min-bytes:1024}")
+    private int compressionMinBytes;
+
+    @Value("${chat.websocket.compression.level:1}")
+    private int compressionLevel;
+
+    // Channel and writer threads become virtual threads, blocking JPA calls in
+    // @MessageMapping handlers then don't hold a platform thread
+    @Value("${chat.websocket.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    // Platform thread pools, 0 picks twice the number of cores
+    @Value("${chat.websocket.inbound.pool-size:0}")
+    private int inboundPoolSize;
+
+    @Value("${chat.websocket.inbound.queue-capacity:10000}")
+    private int inboundQueueCapacity;
+
+    @Value("${chat.websocket.outbound.pool-size:0}")
+    private int outboundPoolSize;
+
+    @Value("${chat.websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${chat.websocket.outbound.writer-pool-size:0}")
+    private int writerPoolSize;
+
+    @Value("${chat.websocket.outbound.limit-check-ms:1000}")
+    private long limitCheckMs;
+
     @Autowired
     private JwtHandshakeInterceptor jwtHandshakeInterceptor;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final List<ExecutorService> executors = new ArrayList<>();
+    private TaskExecutor inboundExecutor;
+    private TaskExecutor outboundExecutor;
+    // Blocking writes of the coalesced frames, one at a time per session
+    private Executor outboundWriters;
+    private final List<CoalescingWebSocketHandler> coalescingHandlers = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    void createExecutors() {
+        inboundExecutor = channelExecutor("inbound", "ws-inbound-", inboundPoolSize, inboundQueueCapacity);
+        outboundExecutor = channelExecutor("outbound", "ws-outbound-", outboundPoolSize, outboundQueueCapacity);
+        if (virtualThreads) {
+            outboundWriters = track(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-writer-", 0).factory()));
+        } else {
+            // Each session has at most one flush queued, so the queue is bounded by the sessions
+            int threads = writerPoolSize > 0 ? writerPoolSize : Runtime.getRuntime().availableProcessors() * 8;
+            outboundWriters = track(new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), Thread.ofPlatform().name("ws-writer-", 0).daemon().factory()));
+        }
+
+        // A stalled write is otherwise only noticed when the next frame for its session arrives
+        ScheduledExecutorService limitChecker = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("ws-limit-check").daemon().factory());
+        limitChecker.scheduleWithFixedDelay(() -> coalescingHandlers.forEach(CoalescingWebSocketHandler::checkLimits),
+                limitCheckMs, limitCheckMs, TimeUnit.MILLISECONDS);
+        track(limitChecker);
+    }
+
     @Override
     public void registerStompEndpoints(@NonNull StompEndpointRegistry registry) {
+        // Plain WebSocket, without the SockJS framing of every message
+        registry.addEndpoint("/ws-chat-native")
+                .setAllowedOriginPatterns(frontendOrigin)
+                .addInterceptors(jwtHandshakeInterceptor, new MessageEncodingInterceptor(compressionEnabled));
+        // Fallback for clients that can't open a WebSocket
         registry.addEndpoint("/ws-chat")
                 .setAllowedOriginPatterns(frontendOrigin)
                 .addInterceptors(jwtHandshakeInterceptor)
@@ -29,7 +139,111 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Override
     public void configureMessageBroker(@NonNull MessageBrokerRegistry registry) {
         registry.setApplicationDestinationPrefixes("/app");
-        registry.enableSimpleBroker("/user", "/queue");
+        // Subscriptions are kept in a ShardedSubscriptionRegistry, see shardedSubscriptions().
+        // /user destinations are resolved to /queue/...-user<session> before they reach the
+        // broker; as a broker prefix the raw subscription would be registered under the same id
+        registry.enableSimpleBroker("/queue");
         registry.setUserDestinationPrefix("/user");
     }
+
+    @Override
+    public boolean configureMessageConverters(@NonNull List<MessageConverter> messageConverters) {
+        // Next to the JSON converter, it only takes messages with its own content type
+        messageConverters.add(new CborMessageConverter());
+        return true;
+    }
+
+    @Override
+    public void configureClientInboundChannel(@NonNull ChannelRegistration registration) {
+        registration.executor(inboundExecutor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(@NonNull ChannelRegistration registration) {
+        registration.executor(outboundExecutor);
+    }
+
+    @Override
+    public void configureWebSocketTransport(@NonNull WebSocketTransportRegistration registration) {
+        MessageCompressor compressor = new MessageCompressor(compressionMinBytes, compressionLevel, meterRegistry);
+        // The limits are enforced by CoalescingWebSocketHandler, the session
+        // decorator of the STOMP handler only sees its non-blocking sends
+        registration.setMessageSizeLimit(messageSizeLimit)
+                .setSendBufferSizeLimit(sendBufferLimit)
+                .setSendTimeLimit(sendTimeLimit)
+                .addDecoratorFactory(handler -> {
+                    CoalescingWebSocketHandler coalescing = new CoalescingWebSocketHandler(handler, outboundWriters,
+                            maxBatchBytes, sendBufferLimit, sendTimeLimit, compressor, meterRegistry);
+                    coalescingHandlers.add(coalescing);
+                    return coalescing;
+                });
+    }
+
+    /**
+     * Executor of a client channel. Pending tasks (queued and running) are
+     * published as chat.ws.channel.pending; a full platform pool queue runs the
+     * task on the caller, pushing back on the transport.
+     */
+    private TaskExecutor channelExecutor(String channel, String threadPrefix, int poolSize, int queueCapacity) {
+        ExecutorService executor;
+        if (virtualThreads) {
+            executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(threadPrefix, 0).factory());
+        } else {
+            int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors() * 2;
+            ThreadFactory factory = Thread.ofPlatform().name(threadPrefix, 0).daemon().factory();
+            executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity), factory, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        track(executor);
+
+        AtomicInteger pending = new AtomicInteger();
+        Gauge.builder("chat.ws.channel.pending", pending, AtomicInteger::get)
+                .tag("channel", channel)
+                .register(meterRegistry);
+        return task -> {
+            pending.incrementAndGet();
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        pending.decrementAndGet();
+                    }
+                });
+            } catch (RuntimeException e) {
+                pending.decrementAndGet();
+                throw e;
+            }
+        };
+    }
+
+    private ExecutorService track(ExecutorService executor) {
+        executors.add(executor);
+        return executor;
+    }
+
+    /**
+     * The broker registry has no setting for the subscription registry, so it is
+     * swapped on the broker handler before that starts
+     */
+    @Bean
+    static BeanPostProcessor shardedSubscriptions(
+            @Value("${chat.broker.shards:0}") int shards,
+            @Value("${chat.broker.cache-limit-per-shard:1024}") int cacheLimit) {
+        int shardCount = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(@NonNull Object bean, @NonNull String beanName) {
+                if (bean instanceof SimpleBrokerMessageHandler broker) {
+                    broker.setSubscriptionRegistry(new ShardedSubscriptionRegistry(shardCount, cacheLimit));
+                }
+                return bean;
+            }
+        };
+    }
+
+    @PreDestroy
+    private void shutDown() {
+        executors.forEach(ExecutorService::shutdownNow);
+    }
 }
@@ -1,17 +1,23 @@
 package com.snoopiechat.backend.config;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
 import org.springframework.web.socket.messaging.SessionConnectEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 import org.springframework.web.socket.messaging.SessionSubscribeEvent;
 
+import com.snoopiechat.backend.event.MessageQueueSubscribedEvent;
 import com.snoopiechat.backend.service.DummyTrafficService;
+import com.snoopiechat.backend.service.PresenceService;
+import com.snoopiechat.backend.service.UserSessionRegistry;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -21,10 +27,18 @@ public class WebSocketEventListener {
     
     @Autowired
     private DummyTrafficService dummyTrafficService;
-    
-    // Track active user sessions and their conversations
-    private final Map<String, Long> sessionToUserId = new ConcurrentHashMap<>();
-    private final Map<Long, String> userIdToSession = new ConcurrentHashMap<>();
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private UserSessionRegistry sessionRegistry;
+
+    // Sessions that connected but have not subscribed to their message queue yet
+    private final Set<String> pendingOfflineFlush = ConcurrentHashMap.newKeySet();
     
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectEvent event) {
@@ -35,9 +49,15 @@ public class WebSocketEventListener {
         if (sessionAttributes != null) {
             Long userId = (Long) sessionAttributes.get("user_id");
             if (userId != null) {
-                sessionToUserId.put(sessionId, userId);
-                userIdToSession.put(userId, sessionId);
+                MimeType contentType = (MimeType) sessionAttributes.get(MessageEncodingInterceptor.ATTRIBUTE);
+                if (sessionRegistry.register(userId, sessionId, contentType)) {
+                    presenceService.userConnected(userId);
+                }
                 log.info("User {} connected with session {}", userId, sessionId);
+
+                // Queued notifications go out once the client subscribed, anything sent
+                // before that would be dropped by the broker again
+                pendingOfflineFlush.add(sessionId);
             }
         }
     }
@@ -47,9 +67,11 @@ public class WebSocketEventListener {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
         String sessionId = headerAccessor.getSessionId();
         
-        Long userId = sessionToUserId.remove(sessionId);
+        pendingOfflineFlush.remove(sessionId);
+        // Other devices of the user keep it connected
+        Long userId = sessionRegistry.unregister(sessionId);
         if (userId != null) {
-            userIdToSession.remove(userId);
+            presenceService.userDisconnected(userId);
             log.info("User {} disconnected with session {}", userId, sessionId);
             
             // Stop any dummy traffic involving this user
@@ -65,9 +87,13 @@ public class WebSocketEventListener {
         
         // Check if user is subscribing to a message queue (indicating they're in a chat)
         if (destination != null && destination.startsWith("/user/") && destination.endsWith("/queue/messages")) {
-            Long userId = sessionToUserId.get(sessionId);
+            Long userId = sessionRegistry.userOf(sessionId);
             if (userId != null) {
                 log.info("User {} subscribed to messages in session {}", userId, sessionId);
+
+                if (pendingOfflineFlush.remove(sessionId)) {
+                    eventPublisher.publishEvent(new MessageQueueSubscribedEvent(userId, sessionId));
+                }
                 // We'll start dummy traffic when actual messages are sent between users
                 // rather than just on subscription, to avoid unnecessary traffic
             }
@@ -80,7 +106,7 @@ public class WebSocketEventListener {
      */
     public void startDummyTrafficBetweenUsers(Long userId1, Long userId2) {
         // Only start if both users are currently connected
-        if (userIdToSession.containsKey(userId1) && userIdToSession.containsKey(userId2)) {
+        if (sessionRegistry.isConnected(userId1) && sessionRegistry.isConnected(userId2)) {
             log.info("Starting dummy traffic between users {} and {}", userId1, userId2);
             dummyTrafficService.startDummyTraffic(userId1, userId2);
         }
@@ -100,6 +126,6 @@ public class WebSocketEventListener {
      * Check if a user is currently connected
      */
     public boolean isUserConnected(Long userId) {
-        return userIdToSession.containsKey(userId);
+        return sessionRegistry.isConnected(userId);
     }
 } 
\ No newline at end of file
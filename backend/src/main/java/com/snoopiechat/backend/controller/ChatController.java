@@ -8,19 +8,35 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
+import com.snoopiechat.backend.dto.ChatMessagePage;
 import com.snoopiechat.backend.dto.ChatNotification;
+import com.snoopiechat.backend.dto.ChatSyncResponse;
+import com.snoopiechat.backend.dto.DeliveryAck;
+import com.snoopiechat.backend.dto.ReadAckRequest;
+import com.snoopiechat.backend.dto.RetentionRequest;
+import com.snoopiechat.backend.dto.SyncAckRequest;
 import com.snoopiechat.backend.mixnets.Envelope;
 import com.snoopiechat.backend.mixnets.MixnetRouter;
 import com.snoopiechat.backend.model.ChatMessage;
+import com.snoopiechat.backend.model.UserPrincipal;
+import com.snoopiechat.backend.service.ChatDeliveryService;
 import com.snoopiechat.backend.service.ChatMessageService;
+import com.snoopiechat.backend.service.ChatSyncService;
+import com.snoopiechat.backend.service.ConversationService;
+import com.snoopiechat.backend.service.MessageRetentionService;
+import com.snoopiechat.backend.service.UserSessionRegistry;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -30,8 +46,12 @@ import lombok.extern.slf4j.Slf4j;
 @RequestMapping("/api/chat")
 @Slf4j
 public class ChatController {
-    private final SimpMessagingTemplate messagingTemplate;
+    private final UserSessionRegistry sessionRegistry;
     private final ChatMessageService chatMessageService;
+    private final ChatSyncService chatSyncService;
+    private final ChatDeliveryService chatDeliveryService;
+    private final MessageRetentionService messageRetentionService;
+    private final ConversationService conversationService;
 
     @MessageMapping("/chat")
     public void processMessage(
@@ -52,11 +72,22 @@ public class ChatController {
             }
         }
         
-        ChatMessage savedMessage = chatMessageService.save(chatMessage);
+        ChatMessageService.SaveResult saveResult = chatMessageService.saveOnce(chatMessage);
+
+        // Tell the sender the message is stored, so it stops resending it
+        if (saveResult.ack() != null) {
+            sessionRegistry.send(chatMessage.getSenderId(), "/queue/acks", saveResult.ack());
+        }
+
+        if (saveResult.isDuplicate()) {
+            log.info("Dropping resend of client message {}", chatMessage.getClientMessageId());
+            return;
+        }
+
+        ChatMessage savedMessage = saveResult.message();
         String recipientId = chatMessage.getRecipientId().toString();
-        String destination = "/queue/messages";
 
-        log.info("Attempting to send message to user '{}' with destination '{}'", recipientId, destination);
+        log.info("Attempting to send message to user '{}' with destination '{}'", recipientId, ChatDeliveryService.DESTINATION);
 
         //add encryption
         Envelope env;
@@ -74,19 +105,18 @@ public class ChatController {
 
         result.thenAccept(finalPayload -> {
             ChatMessage msg = (ChatMessage) finalPayload;
+            ChatNotification notification = ChatNotification.builder()
+                .id(msg.getId())
+                .chatId(msg.getChatId())
+                .seq(msg.getSeq())
+                .senderId(msg.getSenderId())
+                .recipientId(msg.getRecipientId())
+                .content(msg.getContent())
+                .timestamp(msg.getTimestamp())
+                .isDummy(false)
+                .build();
 
-            messagingTemplate.convertAndSendToUser(
-                recipientId,
-                destination,
-                ChatNotification.builder()
-                    .id(msg.getId())
-                    .senderId(msg.getSenderId())
-                    .recipientId(msg.getRecipientId())
-                    .content(msg.getContent())
-                    .timestamp(msg.getTimestamp())
-                    .isDummy(false)
-                    .build()
-            );
+            chatDeliveryService.deliver(msg.getRecipientId(), notification);
         })
         .exceptionally(ex -> {
             log.error("Mixnet Delivery failed", ex);
@@ -96,13 +126,102 @@ public class ChatController {
         log.info("Message dispatch completed");
     }
 
+    /**
+     * Recipient confirms a ChatNotification, stopping its redelivery
+     */
+    @MessageMapping("/chat.ack")
+    public void acknowledgeDelivery(
+        @Payload DeliveryAck ack,
+        StompHeaderAccessor headerAccessor
+    ) {
+        Map<String, Object> sessionAttributes = headerAccessor.getSessionAttributes();
+        Long userId = sessionAttributes != null ? (Long) sessionAttributes.get("user_id") : null;
+
+        if (userId != null) {
+            chatDeliveryService.acknowledge(userId, ack.getChatId(), ack.getSeq());
+        }
+    }
+
+    /**
+     * Get one page of the conversation between two users, oldest message first.
+     * Without a cursor the newest page is returned.
+     *
+     * @param before load messages older than this message id
+     * @param after load messages newer than this message id
+     * @param limit page size (default 50, max 200)
+     * @return the page with the cursors of the neighbouring pages
+     */
     @GetMapping("/messages/{senderId}/{recipientId}")
-    public ResponseEntity<List<ChatMessage>> findChatMessages(
+    public ResponseEntity<ChatMessagePage> findChatMessages(
             @PathVariable("senderId") Long senderId,
-            @PathVariable("recipientId") Long recipientId
+            @PathVariable("recipientId") Long recipientId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit
     ) {
         return ResponseEntity
-            .ok(chatMessageService.findChatMessages(senderId, recipientId));
+            .ok(chatMessageService.findChatMessages(senderId, recipientId, before, after, limit));
+    }
+
+    /**
+     * Get the messages of all the user's chats that this device has not confirmed yet
+     *
+     * @param deviceId stable id the client generated for this device
+     * @param since optional sequence number used for every chat instead of the stored marks
+     * @param limit maximum number of messages (default 500, max 2000)
+     */
+    @GetMapping("/sync")
+    public ResponseEntity<ChatSyncResponse> sync(
+            @RequestParam String deviceId,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Integer limit,
+            Authentication authentication
+    ) {
+        return ResponseEntity.ok(chatSyncService.sync(getCurrentUserId(authentication), deviceId, since, limit));
+    }
+
+    /**
+     * Confirm the messages of a sync response, so the next sync starts after them
+     */
+    @PostMapping("/sync/ack")
+    public ResponseEntity<Void> acknowledgeSync(
+            @RequestBody SyncAckRequest request,
+            Authentication authentication
+    ) {
+        chatSyncService.acknowledge(getCurrentUserId(authentication), request);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Turn disappearing messages on or off for the chat with another user
+     */
+    @PutMapping("/chats/{peerId}/retention")
+    public ResponseEntity<Void> setRetention(
+            @PathVariable("peerId") Long peerId,
+            @RequestBody RetentionRequest request,
+            Authentication authentication
+    ) {
+        messageRetentionService.setChatTtl(getCurrentUserId(authentication), peerId, request.getTtlSeconds());
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Mark the chat with another user read, resetting its unread count
+     */
+    @PutMapping("/chats/{peerId}/read")
+    public ResponseEntity<Void> markRead(
+            @PathVariable("peerId") Long peerId,
+            @RequestBody ReadAckRequest request,
+            Authentication authentication
+    ) {
+        conversationService.markRead(getCurrentUserId(authentication), peerId, request.getSeq());
+        return ResponseEntity.noContent().build();
+    }
+
+    private Long getCurrentUserId(Authentication authentication) {
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserPrincipal userPrincipal)) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not authenticated");
+        }
+        return userPrincipal.getId();
     }
-    
 }
@@ -12,7 +12,9 @@ import org.springframework.web.server.ResponseStatusException;
 import com.snoopiechat.backend.dto.AcceptContactRequest;
 import com.snoopiechat.backend.dto.AddContactRequest;
 import com.snoopiechat.backend.dto.ContactDTO;
-import com.snoopiechat.backend.dto.FirendRequestDTO;
+import com.snoopiechat.backend.dto.ContactPage;
+import com.snoopiechat.backend.dto.FriendRequestPage;
+import com.snoopiechat.backend.dto.UserSummary;
 import com.snoopiechat.backend.model.UserPrincipal;
 import com.snoopiechat.backend.model.Users;
 import com.snoopiechat.backend.repository.UserRepo;
@@ -48,15 +50,30 @@ public class ContactController {
     }
 
     /**
-     * Get all contacts for the authenticated user
+     * Get the current user ID from the authentication object, without loading the user
+     */
+    private Long getCurrentUserId(Authentication authentication) {
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserPrincipal userPrincipal)) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not authenticated");
+        }
+        return userPrincipal.getId();
+    }
+
+    /**
+     * Get the contacts of the authenticated user, a page at a time ordered by username
      * 
+     * @param after          nextCursor of the previous page, omit for the first page
+     * @param limit          page size (default 100, max 500)
      * @param authentication current authentication context
-     * @return list of contacts
+     * @return page of contacts
      */
     @GetMapping
-    public ResponseEntity<List<ContactDTO>> getContacts(Authentication authentication) {
-        Long userId = getCurrentUser(authentication).getId();
-        return ResponseEntity.ok(contactService.getUserContacts(userId));
+    public ResponseEntity<ContactPage> getContacts(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            Authentication authentication) {
+        Long userId = getCurrentUserId(authentication);
+        return ResponseEntity.ok(contactService.getUserContacts(userId, after, limit));
     }
 
     /**
@@ -69,23 +86,25 @@ public class ContactController {
     public ResponseEntity<ContactDTO> getContactData(
             @PathVariable Long contactId,
             Authentication authentication) {
-        Users user = getCurrentUser(authentication);
-        return ResponseEntity.ok(contactService.getContactData(user, contactId));
+        Long userId = getCurrentUserId(authentication);
+        return ResponseEntity.ok(contactService.getContactData(userId, contactId));
     }
 
     /**
      * Search for potential contacts by username
      * 
      * @param query          the search query
+     * @param limit          maximum number of results (default 20, max 50)
      * @param authentication current authentication context
-     * @return list of matching users
+     * @return list of matching users, best match first
      */
     @GetMapping("/search")
-    public ResponseEntity<List<Users>> searchUsers(
+    public ResponseEntity<List<UserSummary>> searchUsers(
             @RequestParam String query,
+            @RequestParam(required = false) Integer limit,
             Authentication authentication) {
-        Long userId = getCurrentUser(authentication).getId();
-        return ResponseEntity.ok(contactService.searchUsers(userId, query));
+        Long userId = getCurrentUserId(authentication);
+        return ResponseEntity.ok(contactService.searchUsers(userId, query, limit));
     }
 
     /**
@@ -115,22 +134,26 @@ public class ContactController {
     }
 
     // Alex: This could've been moved to its own controller but i was lazy
+    // Pages newest first, pass nextCursor as before for older requests (limit: default 100, max 500)
     @GetMapping("/friend-requests/pending")
-    public ResponseEntity<List<FirendRequestDTO>> getPendingFriendRequests(
+    public ResponseEntity<FriendRequestPage> getPendingFriendRequests(
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Integer limit,
             Authentication authentication) {
-        Users user = getCurrentUser(authentication);
+        Long userId = getCurrentUserId(authentication);
 
         return ResponseEntity.status(HttpStatus.OK)
-                .body(contactService.getPendingFriendRequests(user));
+                .body(contactService.getPendingFriendRequests(userId, before, limit));
     }
 
+    // Connected clients get the count with every event on /user/queue/friend-requests
     @GetMapping("/friend-requests/pending/count")
     public ResponseEntity<Long> getPendingFriendRequestsCount(
             Authentication authentication) {
-        Users user = getCurrentUser(authentication);
+        Long userId = getCurrentUserId(authentication);
 
         return ResponseEntity.status(HttpStatus.OK)
-                .body(contactService.getPendingFriendRequestsCount(user));
+                .body(contactService.getPendingFriendRequestsCount(userId));
     }
 
     /**
@@ -144,7 +167,7 @@ public class ContactController {
     public ResponseEntity<Void> removeContact(
             @PathVariable Long contactId,
             Authentication authentication) {
-        Long userId = getCurrentUser(authentication).getId();
+        Long userId = getCurrentUserId(authentication);
         contactService.removeContact(userId, contactId);
         return ResponseEntity.noContent().build();
     }
@@ -160,7 +183,7 @@ public class ContactController {
     public ResponseEntity<ContactDTO> toggleBlockContact(
             @PathVariable Long contactId,
             Authentication authentication) {
-        Long userId = getCurrentUser(authentication).getId();
+        Long userId = getCurrentUserId(authentication);
         return ResponseEntity.ok(contactService.toggleBlockContact(userId, contactId));
     }
 }
\ No newline at end of file
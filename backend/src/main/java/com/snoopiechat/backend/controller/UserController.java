@@ -11,7 +11,6 @@ import org.springframework.web.bind.annotation.RestController;
 import com.snoopiechat.backend.dto.LoginRequest;
 import com.snoopiechat.backend.dto.UserRegisterRequest;
 import com.snoopiechat.backend.dto.client.UserClientDto;
-import com.snoopiechat.backend.model.Users;
 import com.snoopiechat.backend.service.PkiService;
 import com.snoopiechat.backend.service.UserService;
 
@@ -37,7 +36,7 @@ public class UserController {
     private UserService service;
 
     @PostMapping("/register")
-    public Users register(@RequestBody UserRegisterRequest request) {
+    public UserClientDto register(@RequestBody UserRegisterRequest request) {
         return service.register(request);
     }
 
@@ -0,0 +1,27 @@
+package com.snoopiechat.backend.dto;
+
+import java.util.List;
+
+import com.snoopiechat.backend.model.ChatMessage;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessagePage {
+    /** Messages of this page in chronological order */
+    @Schema(required = true)
+    private List<ChatMessage> messages;
+
+    /** Pass as {@code before} to load older messages, null when this page reaches the start of the chat */
+    @Schema(required = false)
+    private Long olderCursor;
+
+    /** Pass as {@code after} to load newer messages, null when this page reaches the newest message */
+    @Schema(required = false)
+    private Long newerCursor;
+}
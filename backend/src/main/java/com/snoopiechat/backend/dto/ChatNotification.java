@@ -15,10 +15,14 @@ import lombok.Setter;
 @Builder
 public class ChatNotification {
     private Long id;
+
+    private String chatId;
+    private Long seq;
     
     private Long senderId;
     private Long recipientId;
-    private String content;
+    // Serialized as base64 in JSON, as raw bytes by binary codecs
+    private byte[] content;
     private LocalDateTime timestamp;
     
     @Builder.Default
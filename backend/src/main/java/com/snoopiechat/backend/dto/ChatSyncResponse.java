@@ -0,0 +1,28 @@
+package com.snoopiechat.backend.dto;
+
+import java.util.List;
+import java.util.Map;
+
+import com.snoopiechat.backend.model.ChatMessage;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSyncResponse {
+    /** Missed messages, ordered by chat id then sequence number */
+    @Schema(required = true)
+    private List<ChatMessage> messages;
+
+    /** Highest sequence number per chat in this response, to be sent back as the sync ack */
+    @Schema(required = true)
+    private Map<String, Long> highWaterMarks;
+
+    /** True when the limit was hit and another sync call is needed */
+    @Schema(required = true)
+    private boolean hasMore;
+}
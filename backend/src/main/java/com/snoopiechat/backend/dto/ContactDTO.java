@@ -23,13 +23,16 @@ public class ContactDTO {
     @Schema(required = true)
     private boolean blocked;
 
-    @Schema(required = false)
-    private String lastMessage;
+    // Ciphertext, serialized as base64
+    @Schema(required = false, type = "string", format = "byte")
+    private byte[] lastMessage;
 
     @Schema(required = false)
     private LocalDateTime messageTimestamp;
 
-    // private int unread;
+    @Schema(required = true)
+    private long unread;
+
     private boolean online;
 
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.snoopiechat.backend.dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactPage {
+    /** Contacts of this page ordered by username */
+    @Schema(required = true)
+    private List<ContactDTO> contacts;
+
+    /** Pass as {@code after} to load the next page, null on the last page */
+    @Schema(required = false)
+    private String nextCursor;
+}
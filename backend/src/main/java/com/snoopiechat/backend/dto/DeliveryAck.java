@@ -0,0 +1,16 @@
+package com.snoopiechat.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Sent by the recipient to /app/chat.ack after it received a ChatNotification
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryAck {
+    private String chatId;
+    private Long seq;
+}
@@ -0,0 +1,30 @@
+package com.snoopiechat.backend.dto;
+
+import com.snoopiechat.backend.model.FriendRequest.RequestStatus;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Pushed to both users of a friend request when it is sent or accepted
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FriendRequestEvent {
+    @Schema(required = true)
+    private Long requestId;
+
+    /** The other user of the request */
+    @Schema(required = true)
+    private String username;
+
+    @Schema(required = true)
+    private RequestStatus status;
+
+    /** Pending requests of the receiving user, replaces polling the count */
+    @Schema(required = true)
+    private long pendingCount;
+}
@@ -0,0 +1,21 @@
+package com.snoopiechat.backend.dto;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FriendRequestPage {
+    /** Requests of this page, newest first */
+    @Schema(required = true)
+    private List<FirendRequestDTO> requests;
+
+    /** Pass as {@code before} to load older requests, null on the last page */
+    @Schema(required = false)
+    private Long nextCursor;
+}
@@ -0,0 +1,19 @@
+package com.snoopiechat.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Sent to the sender on /user/{id}/queue/acks once a message is stored, so the
+ * client can stop retrying it
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageAck {
+    private String clientMessageId;
+    private Long id;
+    private String chatId;
+    private Long seq;
+}
@@ -0,0 +1,17 @@
+package com.snoopiechat.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceUpdate {
+    @Schema(required = true)
+    private Long userId;
+
+    @Schema(required = true)
+    private boolean online;
+}
@@ -0,0 +1,13 @@
+package com.snoopiechat.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class ReadAckRequest {
+    /** Sequence number of the last message read, null marks the whole chat read */
+    @Schema(required = false)
+    private Long seq;
+}
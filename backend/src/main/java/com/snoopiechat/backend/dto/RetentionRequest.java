@@ -0,0 +1,13 @@
+package com.snoopiechat.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class RetentionRequest {
+    /** Lifetime of messages in the chat, null or 0 turns disappearing messages off */
+    @Schema(required = false)
+    private Long ttlSeconds;
+}
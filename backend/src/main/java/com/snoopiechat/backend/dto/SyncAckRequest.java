@@ -0,0 +1,18 @@
+package com.snoopiechat.backend.dto;
+
+import java.util.Map;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class SyncAckRequest {
+    @Schema(required = true)
+    private String deviceId;
+
+    /** chatId -> highest sequence number the device has stored */
+    @Schema(required = true)
+    private Map<String, Long> highWaterMarks;
+}
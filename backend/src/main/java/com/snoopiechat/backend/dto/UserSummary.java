@@ -0,0 +1,15 @@
+package com.snoopiechat.backend.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Public fields of another user, as shown in search results. A projection: only
+ * these columns are selected.
+ */
+public interface UserSummary {
+    @Schema(required = true)
+    Long getId();
+
+    @Schema(required = true)
+    String getUsername();
+}
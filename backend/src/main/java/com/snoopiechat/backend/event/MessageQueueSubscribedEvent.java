@@ -0,0 +1,8 @@
+package com.snoopiechat.backend.event;
+
+/**
+ * Published when a freshly connected session subscribed to its user's message
+ * queue, i.e. the first moment notifications can actually reach it
+ */
+public record MessageQueueSubscribedEvent(Long userId, String sessionId) {
+}
@@ -0,0 +1,47 @@
+package com.snoopiechat.backend.migration;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.stereotype.Component;
+
+/**
+ * Databases created by Hibernate's schema update may predate some columns.
+ * SQLite has no ADD COLUMN IF NOT EXISTS, so the columns are checked first.
+ */
+@Component
+public class V2__AddMissingColumns extends BaseJavaMigration {
+    private static final String[][] COLUMNS = {
+        { "chat_message", "seq", "bigint" },
+        { "chat_message", "content_blob", "blob" },
+        { "chat_message", "client_message_id", "varchar(255)" },
+    };
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            for (String[] column : COLUMNS) {
+                if (!columnsOf(statement, column[0]).contains(column[1])) {
+                    statement.execute("ALTER TABLE " + column[0] + " ADD COLUMN " + column[1] + " " + column[2]);
+                }
+            }
+        }
+    }
+
+    private static Set<String> columnsOf(Statement statement, String table) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (ResultSet rs = statement.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                columns.add(rs.getString("name"));
+            }
+        }
+        return columns;
+    }
+}
@@ -1,12 +1,22 @@
 package com.snoopiechat.backend.model;
 
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
 
+import org.springframework.data.domain.Persistable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -19,21 +29,76 @@ import lombok.Setter;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
-public class ChatMessage implements Serializable {
+public class ChatMessage implements Persistable<Long>, Serializable {
     private static final long serialVersionUID = 1L;
 
+    // Assigned by ChatMessageService, striped over the shards so ids stay unique
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     private String chatId;
+
+    // Per-chat monotonic sequence number, assigned when the message is stored
+    private Long seq;
+
     private Long senderId;
     private Long recipientId;
-    private String content;
+
+    // Raw ciphertext; JSON carries it as base64, exactly what clients already send
+    @Column(name = "content_blob")
+    @Schema(type = "string", format = "byte")
+    private byte[] content;
+
+    // Base64 text column used before content_blob, emptied by the background conversion
+    @JsonIgnore
+    @Column(name = "content")
+    private String legacyContent;
+
+    // Client generated id, lets the server drop resends of the same message
+    private String clientMessageId;
 
     private LocalDateTime timestamp;
     
     @Builder.Default
     private Boolean isDummy = false;
 
+    // Ids are assigned before saving, so Spring Data can't tell new rows from
+    // stored ones by the id and would merge, with an extra SELECT per insert
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient boolean stored;
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return !stored;
+    }
+
+    @PostPersist
+    void markStored() {
+        stored = true;
+    }
+
+    /**
+     * Rows not converted yet still expose their content as bytes. If the entity is
+     * flushed afterwards the row ends up converted as well.
+     */
+    @PostLoad
+    void loadLegacyContent() {
+        markStored();
+        if (content == null && legacyContent != null) {
+            content = decodeLegacyContent(legacyContent);
+            legacyContent = null;
+        }
+    }
+
+    public static byte[] decodeLegacyContent(String text) {
+        try {
+            return Base64.getDecoder().decode(text);
+        } catch (IllegalArgumentException e) {
+            // Not base64 (very old plaintext rows), keep the characters
+            return text.getBytes(StandardCharsets.UTF_8);
+        }
+    }
 }
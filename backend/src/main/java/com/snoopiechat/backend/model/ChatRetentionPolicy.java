@@ -0,0 +1,27 @@
+package com.snoopiechat.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Disappearing messages of a chat: messages older than {@code ttlSeconds} are
+ * deleted by the retention compactor. Chats without a policy only follow the
+ * global retention.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChatRetentionPolicy {
+    @Id
+    private String chatId;
+
+    @Column(nullable = false)
+    private Long ttlSeconds;
+}
@@ -5,12 +5,15 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "sender_id", "recipient_id" }))
 @Entity
 @Getter
 @Setter
@@ -25,4 +28,4 @@ public class ChatRoom {
     private String chatId;
     private Long senderId;
     private Long recipientId;
-}
\ No newline at end of file
+}
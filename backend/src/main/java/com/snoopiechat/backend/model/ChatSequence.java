@@ -0,0 +1,26 @@
+package com.snoopiechat.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Last sequence number handed out for a chat. Messages of a chat are numbered
+ * 1, 2, 3... in the order they are stored.
+ */
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChatSequence {
+    @Id
+    private String chatId;
+
+    @Column(nullable = false)
+    private Long lastSeq;
+}
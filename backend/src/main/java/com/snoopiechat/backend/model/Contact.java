@@ -35,6 +35,10 @@ public class Contact {
     @Column(nullable = false)
     private boolean blocked = false;
 
+    // Copy of contact.username for paging, maintained by triggers (see V6)
+    @Column(name = "contact_username", insertable = false, updatable = false)
+    private String contactUsername;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
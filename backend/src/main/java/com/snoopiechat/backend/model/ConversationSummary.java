@@ -0,0 +1,52 @@
+package com.snoopiechat.backend.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Data;
+
+/**
+ * Conversation list entry of a user: the last message exchanged with a peer and
+ * how far the user has read. Sending a message also marks everything before it
+ * read, so the unread count is simply lastSeq - readSeq.
+ */
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "user_id", "peer_id" }))
+@Entity
+@Data
+public class ConversationSummary {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "peer_id", nullable = false)
+    private Long peerId;
+
+    @Column(name = "chat_id", nullable = false)
+    private String chatId;
+
+    private Long lastMessageId;
+
+    @Column(nullable = false)
+    private Long lastSeq;
+
+    @Column(nullable = false)
+    private Long readSeq;
+
+    // Ciphertext of the last message; it can't be shortened without breaking decryption
+    private byte[] lastMessage;
+
+    private LocalDateTime lastTimestamp;
+
+    public long getUnread() {
+        return Math.max(0, lastSeq - readSeq);
+    }
+}
@@ -0,0 +1,34 @@
+package com.snoopiechat.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Data;
+
+/**
+ * Highest message sequence number a device has confirmed for a chat
+ */
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "user_id", "device_id", "chat_id" }))
+@Entity
+@Data
+public class DeviceSyncState {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "device_id", nullable = false)
+    private String deviceId;
+
+    @Column(name = "chat_id", nullable = false)
+    private String chatId;
+
+    @Column(nullable = false)
+    private Long lastSeq;
+}
@@ -11,11 +11,9 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
-import jakarta.persistence.Table;
-import jakarta.persistence.UniqueConstraint;
 import lombok.Data;
 
-@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "sender_id", "recipient_id" }))
+// One pending request per pair, enforced by the partial index uk_friend_request_pending
 @Entity
 @Data
 public class FriendRequest {
@@ -7,6 +7,9 @@ import java.util.List;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -18,6 +21,8 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 @Entity
 @Data
@@ -30,6 +35,9 @@ public class Users {
     @Column(nullable = false, unique = true)
     private String username;
 
+    // Accepted on registration, never written out
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    @ToString.Exclude
     private String password;
 
     @NotNull(message = "Email is required")
@@ -37,10 +45,18 @@ public class Users {
     @Column(unique = true, nullable = false)
     private String email;
 
+    // Relations stay out of JSON, equals/hashCode and toString: walking them loads
+    // every contact and, through Contact, loops back to this user
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<Contact> contacts = new ArrayList<>();
 
     @OneToMany(mappedBy = "contact")
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<Contact> addedBy = new ArrayList<>();
 
     @CreationTimestamp
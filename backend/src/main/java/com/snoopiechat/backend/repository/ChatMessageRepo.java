@@ -1,15 +1,138 @@
 package com.snoopiechat.backend.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.snoopiechat.backend.model.ChatMessage;
 
+// Query methods declared here are not covered by SimpleJpaRepository's read-only
+// default; marking them read-only sends them to the SQLite reader pool
+@Transactional(readOnly = true)
 public interface ChatMessageRepo extends JpaRepository<ChatMessage, Long> {
     List<ChatMessage> findByChatId(String s); 
 
-    List<ChatMessage> findByChatIdOrderByTimestampAsc(String chatId);
-
     ChatMessage findTopByChatIdOrderByTimestampDesc(String chatId);
+
+    Optional<ChatMessage> findBySenderIdAndClientMessageId(Long senderId, String clientMessageId);
+
+    /**
+     * Newest non-dummy messages of a chat, newest first
+     */
+    @Query("""
+            SELECT m FROM ChatMessage m
+            WHERE m.chatId = :chatId AND (m.isDummy IS NULL OR m.isDummy = false)
+            ORDER BY m.timestamp DESC, m.id DESC
+            """)
+    List<ChatMessage> findLatestPage(@Param("chatId") String chatId, Limit limit);
+
+    /**
+     * Non-dummy messages strictly older than the (timestamp, id) cursor, newest first
+     */
+    @Query("""
+            SELECT m FROM ChatMessage m
+            WHERE m.chatId = :chatId AND (m.isDummy IS NULL OR m.isDummy = false)
+              AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id))
+            ORDER BY m.timestamp DESC, m.id DESC
+            """)
+    List<ChatMessage> findPageBefore(
+            @Param("chatId") String chatId,
+            @Param("timestamp") LocalDateTime timestamp,
+            @Param("id") Long id,
+            Limit limit);
+
+    /**
+     * Non-dummy messages strictly newer than the (timestamp, id) cursor, oldest first
+     */
+    @Query("""
+            SELECT m FROM ChatMessage m
+            WHERE m.chatId = :chatId AND (m.isDummy IS NULL OR m.isDummy = false)
+              AND (m.timestamp > :timestamp OR (m.timestamp = :timestamp AND m.id > :id))
+            ORDER BY m.timestamp ASC, m.id ASC
+            """)
+    List<ChatMessage> findPageAfter(
+            @Param("chatId") String chatId,
+            @Param("timestamp") LocalDateTime timestamp,
+            @Param("id") Long id,
+            Limit limit);
+
+    /**
+     * Non-dummy messages of a chat after sequence number {@code seq}, in sequence order
+     */
+    @Query("""
+            SELECT m FROM ChatMessage m
+            WHERE m.chatId = :chatId AND m.seq > :seq AND (m.isDummy IS NULL OR m.isDummy = false)
+            ORDER BY m.seq ASC
+            """)
+    List<ChatMessage> findAfterSeq(@Param("chatId") String chatId, @Param("seq") long seq, Limit limit);
+
+    /**
+     * Advance the message id counter of the current shard to the next id with
+     * id % shards == shard. Must run in the same transaction as
+     * {@link #currentId()}.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            UPDATE message_id_sequence
+            SET last_id = last_id + 1 + ((:shard - (last_id + 1)) % :shards + :shards) % :shards
+            WHERE id = 0
+            """, nativeQuery = true)
+    int incrementId(@Param("shard") int shard, @Param("shards") int shards);
+
+    @Query(value = "SELECT last_id FROM message_id_sequence WHERE id = 0", nativeQuery = true)
+    Long currentId();
+
+    @Query("SELECT DISTINCT m.chatId FROM ChatMessage m WHERE m.seq IS NULL AND m.chatId IS NOT NULL")
+    List<String> findChatIdsWithoutSeq();
+
+    @Query("SELECT m FROM ChatMessage m WHERE m.chatId = :chatId AND m.seq IS NULL ORDER BY m.timestamp ASC, m.id ASC")
+    List<ChatMessage> findWithoutSeq(@Param("chatId") String chatId, Limit limit);
+
+    @Query("SELECT m FROM ChatMessage m WHERE m.legacyContent IS NOT NULL ORDER BY m.id ASC")
+    List<ChatMessage> findWithLegacyContent(Limit limit);
+
+    @Query("SELECT DISTINCT m.chatId FROM ChatMessage m WHERE m.timestamp < :cutoff AND m.chatId IS NOT NULL")
+    List<String> findChatIdsWithMessagesBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * Oldest messages of a chat before {@code cutoff}, in pagination order
+     */
+    @Query("SELECT m FROM ChatMessage m WHERE m.chatId = :chatId AND m.timestamp < :cutoff ORDER BY m.timestamp ASC, m.id ASC")
+    List<ChatMessage> findOlderThan(@Param("chatId") String chatId, @Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    /**
+     * Delete up to {@code limit} messages of a chat older than {@code cutoff}.
+     * Bounded so a single transaction never holds the write lock for long.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            DELETE FROM chat_message WHERE id IN (
+              SELECT id FROM chat_message WHERE chat_id = :chatId AND timestamp < :cutoff LIMIT :limit
+            )
+            """, nativeQuery = true)
+    int deleteChatBatchOlderThan(
+            @Param("chatId") String chatId,
+            @Param("cutoff") LocalDateTime cutoff,
+            @Param("limit") int limit);
+
+    /**
+     * Delete up to {@code limit} messages of any chat older than {@code cutoff}
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            DELETE FROM chat_message WHERE id IN (
+              SELECT id FROM chat_message WHERE timestamp < :cutoff LIMIT :limit
+            )
+            """, nativeQuery = true)
+    int deleteBatchOlderThan(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
 }
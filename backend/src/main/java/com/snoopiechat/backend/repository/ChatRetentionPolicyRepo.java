@@ -0,0 +1,8 @@
+package com.snoopiechat.backend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.snoopiechat.backend.model.ChatRetentionPolicy;
+
+public interface ChatRetentionPolicyRepo extends JpaRepository<ChatRetentionPolicy, String> {
+}
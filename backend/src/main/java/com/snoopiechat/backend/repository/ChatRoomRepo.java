@@ -1,11 +1,39 @@
 package com.snoopiechat.backend.repository;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.snoopiechat.backend.model.ChatRoom;
 
+@Transactional(readOnly = true)
 public interface ChatRoomRepo extends JpaRepository<ChatRoom, Long>  {
-    Optional<ChatRoom> findBySenderIdAndRecipientId(Long senderId, Long recipientId);
+    /**
+     * Find the room for a sender/recipient pair. Older databases may hold duplicate
+     * rows for a pair, so the oldest one wins.
+     */
+    Optional<ChatRoom> findFirstBySenderIdAndRecipientIdOrderByIdAsc(Long senderId, Long recipientId);
+
+    @Query("SELECT r.chatId FROM ChatRoom r WHERE r.senderId = :senderId")
+    List<String> findChatIdsBySenderId(@Param("senderId") Long senderId);
+
+    /**
+     * Insert a room row unless one already exists for the pair (relies on the
+     * unique constraint on sender_id/recipient_id).
+     *
+     * @return number of inserted rows (0 if the pair already existed)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT OR IGNORE INTO chat_room (chat_id, sender_id, recipient_id) VALUES (:chatId, :senderId, :recipientId)",
+            nativeQuery = true)
+    int insertIfAbsent(
+            @Param("chatId") String chatId,
+            @Param("senderId") Long senderId,
+            @Param("recipientId") Long recipientId);
 }
@@ -0,0 +1,27 @@
+package com.snoopiechat.backend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.snoopiechat.backend.model.ChatSequence;
+
+@Transactional(readOnly = true)
+public interface ChatSequenceRepo extends JpaRepository<ChatSequence, String> {
+    /**
+     * Bump the counter of a chat, creating it on first use. Must run in the same
+     * transaction as {@link #currentSeq(String)}.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO chat_sequence (chat_id, last_seq) VALUES (:chatId, 1)
+            ON CONFLICT(chat_id) DO UPDATE SET last_seq = last_seq + 1
+            """, nativeQuery = true)
+    int increment(@Param("chatId") String chatId);
+
+    @Query(value = "SELECT last_seq FROM chat_sequence WHERE chat_id = :chatId", nativeQuery = true)
+    Long currentSeq(@Param("chatId") String chatId);
+}
@@ -1,14 +1,21 @@
 package com.snoopiechat.backend.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.snoopiechat.backend.dto.ContactDTO;
 import com.snoopiechat.backend.model.Contact;
 import com.snoopiechat.backend.model.Users;
 
+@Transactional(readOnly = true)
 @Repository
 public interface ContactRepo extends JpaRepository<Contact, Long> {
     /**
@@ -44,4 +51,72 @@ public interface ContactRepo extends JpaRepository<Contact, Long> {
      * @return true if the relationship exists, false otherwise
      */
     boolean existsByUserAndContact(Users user, Users contact);
-} 
\ No newline at end of file
+
+    /**
+     * Page of a user's contact list ordered by username: the contacts' user fields
+     * and conversation summaries in a single query
+     * 
+     * @param userId the user whose contacts to list
+     * @param after username of the last contact of the previous page, "" for the first page
+     * @param limit page size
+     * @return one entry per contact, without messages for contacts never written to
+     */
+    @Query("""
+            SELECT new com.snoopiechat.backend.dto.ContactDTO(
+                u.id, u.username, u.email, c.blocked,
+                s.lastMessage, s.lastTimestamp, COALESCE(s.lastSeq - s.readSeq, 0), false)
+            FROM Contact c
+            JOIN c.contact u
+            LEFT JOIN ConversationSummary s ON s.userId = c.user.id AND s.peerId = u.id
+            WHERE c.user.id = :userId AND c.contactUsername > :after
+            ORDER BY c.contactUsername
+            """)
+    List<ContactDTO> findContactPage(@Param("userId") Long userId, @Param("after") String after, Limit limit);
+
+    /**
+     * One entry of a user's contact list, see {@link #findContactPage(Long, String, Limit)}
+     * 
+     * @param userId the user
+     * @param contactId user id of the contact
+     * @return the entry if the contact is in the user's list
+     */
+    @Query("""
+            SELECT new com.snoopiechat.backend.dto.ContactDTO(
+                u.id, u.username, u.email, c.blocked,
+                s.lastMessage, s.lastTimestamp, COALESCE(s.lastSeq - s.readSeq, 0), false)
+            FROM Contact c
+            JOIN c.contact u
+            LEFT JOIN ConversationSummary s ON s.userId = c.user.id AND s.peerId = u.id
+            WHERE c.user.id = :userId AND u.id = :contactId
+            """)
+    Optional<ContactDTO> findContactEntry(@Param("userId") Long userId, @Param("contactId") Long contactId);
+
+    /**
+     * Users that see the given user's presence: both have the other in their
+     * contact list and neither blocked the other
+     * 
+     * @param userId the user whose presence changed
+     * @return ids of the mutual contacts
+     */
+    @Query("""
+            SELECT c.user.id FROM Contact c, Contact r
+            WHERE c.contact.id = :userId AND c.blocked = false
+              AND r.user.id = :userId AND r.contact.id = c.user.id AND r.blocked = false
+            """)
+    List<Long> findMutualWatcherIds(@Param("userId") Long userId);
+
+    /**
+     * The users among {@code contactIds} whose presence the given user sees, see
+     * {@link #findMutualWatcherIds(Long)}
+     * 
+     * @param userId the user looking at the contacts
+     * @param contactIds user ids of the contacts
+     * @return ids of the mutual contacts among them
+     */
+    @Query("""
+            SELECT c.contact.id FROM Contact c, Contact r
+            WHERE c.user.id = :userId AND c.contact.id IN :contactIds AND c.blocked = false
+              AND r.user.id = c.contact.id AND r.contact.id = :userId AND r.blocked = false
+            """)
+    List<Long> findMutualContactIds(@Param("userId") Long userId, @Param("contactIds") Collection<Long> contactIds);
+}
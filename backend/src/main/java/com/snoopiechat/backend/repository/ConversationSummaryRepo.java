@@ -0,0 +1,54 @@
+package com.snoopiechat.backend.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.snoopiechat.backend.model.ConversationSummary;
+
+@Transactional(readOnly = true)
+public interface ConversationSummaryRepo extends JpaRepository<ConversationSummary, Long> {
+    /**
+     * Record a stored message in a user's entry. Updates arriving out of order never
+     * replace a newer last message, and marks only move forwards.
+     *
+     * @param readSeq sequence number the user has read up to (their own messages), 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO conversation_summary
+              (user_id, peer_id, chat_id, last_message_id, last_seq, read_seq, last_message, last_timestamp)
+            VALUES (:userId, :peerId, :chatId, :messageId, :seq, :readSeq, :content, :timestamp)
+            ON CONFLICT(user_id, peer_id) DO UPDATE SET
+              last_message_id = CASE WHEN excluded.last_seq > last_seq THEN excluded.last_message_id ELSE last_message_id END,
+              last_message = CASE WHEN excluded.last_seq > last_seq THEN excluded.last_message ELSE last_message END,
+              last_timestamp = CASE WHEN excluded.last_seq > last_seq THEN excluded.last_timestamp ELSE last_timestamp END,
+              last_seq = MAX(last_seq, excluded.last_seq),
+              read_seq = MAX(read_seq, excluded.read_seq)
+            """, nativeQuery = true)
+    int upsertLastMessage(
+            @Param("userId") Long userId,
+            @Param("peerId") Long peerId,
+            @Param("chatId") String chatId,
+            @Param("messageId") Long messageId,
+            @Param("seq") Long seq,
+            @Param("readSeq") Long readSeq,
+            @Param("content") byte[] content,
+            @Param("timestamp") LocalDateTime timestamp);
+
+    /**
+     * Move a user's read mark in a conversation forwards, at most to the last message
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            UPDATE conversation_summary SET read_seq = MAX(read_seq, MIN(:seq, last_seq))
+            WHERE user_id = :userId AND peer_id = :peerId
+            """, nativeQuery = true)
+    int markRead(@Param("userId") Long userId, @Param("peerId") Long peerId, @Param("seq") long seq);
+}
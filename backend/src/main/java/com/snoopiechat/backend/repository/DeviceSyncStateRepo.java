@@ -0,0 +1,32 @@
+package com.snoopiechat.backend.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.snoopiechat.backend.model.DeviceSyncState;
+
+@Transactional(readOnly = true)
+public interface DeviceSyncStateRepo extends JpaRepository<DeviceSyncState, Long> {
+    List<DeviceSyncState> findByUserIdAndDeviceId(Long userId, String deviceId);
+
+    /**
+     * Store a device's high-water mark for a chat. Marks never move backwards.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO device_sync_state (user_id, device_id, chat_id, last_seq)
+            VALUES (:userId, :deviceId, :chatId, :lastSeq)
+            ON CONFLICT(user_id, device_id, chat_id) DO UPDATE SET last_seq = MAX(last_seq, excluded.last_seq)
+            """, nativeQuery = true)
+    int upsertHighWaterMark(
+            @Param("userId") Long userId,
+            @Param("deviceId") String deviceId,
+            @Param("chatId") String chatId,
+            @Param("lastSeq") Long lastSeq);
+}
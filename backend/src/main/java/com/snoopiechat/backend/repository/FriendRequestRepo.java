@@ -2,18 +2,37 @@ package com.snoopiechat.backend.repository;
 
 import java.util.List;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.snoopiechat.backend.dto.FirendRequestDTO;
 import com.snoopiechat.backend.model.Users;
 import com.snoopiechat.backend.model.FriendRequest.FriendRequest;
 import com.snoopiechat.backend.model.FriendRequest.RequestStatus;
 
+@Transactional(readOnly = true)
 @Repository
 public interface FriendRequestRepo extends JpaRepository<FriendRequest, Long>{
     boolean existsBySenderAndRecipientAndStatus(Users sender, Users recipient, RequestStatus status);
 
-    List<FriendRequest> findByRecipientAndStatus(Users recipient, RequestStatus status);
+    /**
+     * Page of the requests sent to a user with the given status, newest first,
+     * with the sender's username
+     *
+     * @param before id of the last request of the previous page, Long.MAX_VALUE for the first page
+     */
+    @Query("""
+            SELECT new com.snoopiechat.backend.dto.FirendRequestDTO(r.id, s.username)
+            FROM FriendRequest r JOIN r.sender s
+            WHERE r.recipient.id = :recipientId AND r.status = :status AND r.id < :before
+            ORDER BY r.id DESC
+            """)
+    List<FirendRequestDTO> findRequestsTo(@Param("recipientId") Long recipientId, @Param("status") RequestStatus status,
+            @Param("before") Long before, Limit limit);
 
-    long countByRecipientAndStatus(Users recipient, RequestStatus status);
+    long countByRecipientIdAndStatus(Long recipientId, RequestStatus status);
 }
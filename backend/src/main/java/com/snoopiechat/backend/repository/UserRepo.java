@@ -1,12 +1,19 @@
 package com.snoopiechat.backend.repository;
 
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.snoopiechat.backend.dto.UserSummary;
+import com.snoopiechat.backend.dto.client.UserClientDto;
 import com.snoopiechat.backend.model.Users;
 
+@Transactional(readOnly = true)
 @Repository
 public interface UserRepo extends JpaRepository<Users, Integer> {
     Users findByUsername(String username);
@@ -14,6 +21,9 @@ public interface UserRepo extends JpaRepository<Users, Integer> {
 
     Users findById(Long id);
 
+    @Query("SELECT new com.snoopiechat.backend.dto.client.UserClientDto(u.id, u.username, u.email) FROM Users u WHERE u.email = :email")
+    Optional<UserClientDto> findClientDtoByEmail(@Param("email") String email);
+
     /**
      * Check if a user with the given email exists
      * 
@@ -31,10 +41,56 @@ public interface UserRepo extends JpaRepository<Users, Integer> {
     boolean existsByUsername(String username);
     
     /**
-     * Find users by username containing the given string (case insensitive)
+     * Find users whose username contains the query, through the trigram index.
+     * Exact matches rank first, then names starting with the query, then by bm25
+     * and length. The user and their contacts are left out.
+     * 
+     * @param match FTS5 phrase of the query (at least three characters)
+     * @param query the query itself
+     * @param userId the searching user
+     * @param limit maximum number of results
+     * @return the best matches
+     */
+    @Query(value = """
+            SELECT u.id AS id, u.username AS username FROM users_search
+            JOIN users u ON u.id = users_search.rowid
+            WHERE users_search MATCH :match
+              AND u.id <> :userId
+              AND NOT EXISTS (SELECT 1 FROM contact c WHERE c.user_id = :userId AND c.contact_id = u.id)
+            ORDER BY lower(u.username) = lower(:query) DESC,
+                     substr(lower(u.username), 1, length(:query)) = lower(:query) DESC,
+                     users_search.rank,
+                     length(u.username)
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<UserSummary> searchByTrigram(
+            @Param("match") String match,
+            @Param("query") String query,
+            @Param("userId") Long userId,
+            @Param("limit") int limit);
+
+    /**
+     * Find users whose username starts with a prefix (case insensitive), as a
+     * range scan on the username index: {@code from <= username < to}.
+     * The user and their contacts are left out.
      * 
-     * @param username part of the username to search for
-     * @return list of users with usernames containing the search string
+     * @param from the prefix
+     * @param to the prefix followed by the highest character
+     * @param userId the searching user
+     * @param limit maximum number of results
+     * @return matching users in username order
      */
-    List<Users> findByUsernameContainingIgnoreCase(String username);
+    @Query(value = """
+            SELECT u.id AS id, u.username AS username FROM users u
+            WHERE u.username >= :from COLLATE NOCASE AND u.username < :to COLLATE NOCASE
+              AND u.id <> :userId
+              AND NOT EXISTS (SELECT 1 FROM contact c WHERE c.user_id = :userId AND c.contact_id = u.id)
+            ORDER BY u.username COLLATE NOCASE
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<UserSummary> searchByPrefix(
+            @Param("from") String from,
+            @Param("to") String to,
+            @Param("userId") Long userId,
+            @Param("limit") int limit);
 }
@@ -0,0 +1,286 @@
+package com.snoopiechat.backend.service;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.snoopiechat.backend.cluster.ClusterBus;
+import com.snoopiechat.backend.cluster.ClusterUserRegistry;
+import com.snoopiechat.backend.dto.ChatNotification;
+import com.snoopiechat.backend.event.MessageQueueSubscribedEvent;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * At-least-once delivery of chat notifications. Every notification handed to a
+ * connected recipient stays pending until the client acknowledges it on
+ * /app/chat.ack; unacknowledged ones are resent with exponential backoff, and
+ * moved to the offline queue if the recipient went away in the meantime.
+ * Clients deduplicate redeliveries by (chatId, seq). While the offline queue of
+ * a reconnected user is flushed, new notifications queue up behind it.
+ *
+ * A notification for a recipient connected only to other nodes is handed to
+ * one of them and tracked there, where the acks arrive. Acks for
+ * notifications not pending here are passed to the other nodes of the
+ * recipient. Offline queues are per node: once a reconnected client
+ * subscribed, the other nodes are asked to flush theirs too and hand their
+ * notifications to a node the client is connected to.
+ */
+@Service
+@Slf4j
+public class ChatDeliveryService {
+    public static final String DESTINATION = "/queue/messages";
+    private static final String DELIVERY_TOPIC = "delivery.deliver";
+    private static final String ACK_TOPIC = "delivery.ack";
+    private static final String FLUSH_TOPIC = "delivery.flush";
+
+    public record RemoteDelivery(Long recipientId, ChatNotification notification) {
+    }
+
+    public record RemoteAck(Long recipientId, String chatId, Long seq) {
+    }
+
+    public record FlushRequest(Long userId) {
+    }
+
+    @Autowired
+    private UserSessionRegistry sessionRegistry;
+
+    @Autowired
+    private OfflineMessageQueueService offlineMessageQueueService;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    @Autowired
+    private ClusterUserRegistry clusterUsers;
+
+    @Value("${chat.delivery.ack-timeout-ms:5000}")
+    private long ackTimeoutMs;
+
+    @Value("${chat.delivery.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${chat.delivery.max-pending:100000}")
+    private int maxPending;
+
+    @Value("${chat.offline-queue.flush-batch-size:50}")
+    private int flushBatchSize;
+
+    private final ScheduledExecutorService executorService = Executors.newScheduledThreadPool(2);
+    private final Map<String, PendingDelivery> pending = new ConcurrentHashMap<>();
+    // Users whose offline queue is being flushed
+    private final Map<Long, Boolean> flushing = new ConcurrentHashMap<>();
+
+    private static final class PendingDelivery {
+        private final Long recipientId;
+        private final ChatNotification notification;
+        private int attempts;
+        private ScheduledFuture<?> timer;
+
+        PendingDelivery(Long recipientId, ChatNotification notification) {
+            this.recipientId = recipientId;
+            this.notification = notification;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        // Forwarded once, if the recipient moved on meanwhile the notification is queued here
+        clusterBus.subscribe(DELIVERY_TOPIC, RemoteDelivery.class,
+                (node, delivery) -> deliverLocally(delivery.recipientId(), delivery.notification()));
+        clusterBus.subscribe(ACK_TOPIC, RemoteAck.class,
+                (node, ack) -> removePending(pendingKey(ack.recipientId(), ack.chatId(), ack.seq())));
+        clusterBus.subscribe(FLUSH_TOPIC, FlushRequest.class, (node, request) -> startFlush(request.userId()));
+    }
+
+    /**
+     * Deliver a notification now if the recipient is connected, otherwise queue it
+     */
+    public void deliver(Long recipientId, ChatNotification notification) {
+        if (!sessionRegistry.isConnectedLocally(recipientId)) {
+            Iterator<String> nodes = clusterUsers.nodesOf(recipientId).iterator();
+            if (nodes.hasNext()) {
+                clusterBus.send(nodes.next(), DELIVERY_TOPIC, new RemoteDelivery(recipientId, notification));
+                return;
+            }
+        }
+        deliverLocally(recipientId, notification);
+    }
+
+    private void deliverLocally(Long recipientId, ChatNotification notification) {
+        if (!sessionRegistry.isConnectedLocally(recipientId)) {
+            offlineMessageQueueService.enqueue(recipientId, notification);
+            return;
+        }
+
+        // While older notifications are flushed, newer ones queue up behind them
+        boolean[] queued = { false };
+        flushing.computeIfPresent(recipientId, (id, flush) -> {
+            offlineMessageQueueService.enqueue(id, notification);
+            queued[0] = true;
+            return flush;
+        });
+        if (!queued[0]) {
+            sendTracked(recipientId, notification);
+        }
+    }
+
+    /**
+     * Called when the recipient confirmed a notification
+     */
+    public void acknowledge(Long recipientId, String chatId, Long seq) {
+        if (chatId == null || seq == null) {
+            return;
+        }
+        if (!removePending(pendingKey(recipientId, chatId, seq))) {
+            // Tracked by the node that delivered it to another device of the recipient
+            for (String node : clusterUsers.nodesOf(recipientId)) {
+                clusterBus.send(node, ACK_TOPIC, new RemoteAck(recipientId, chatId, seq));
+            }
+        }
+    }
+
+    private boolean removePending(String key) {
+        PendingDelivery delivery = pending.remove(key);
+        if (delivery == null) {
+            return false;
+        }
+        synchronized (delivery) {
+            if (delivery.timer != null) {
+                delivery.timer.cancel(false);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drain the offline queue once a reconnected client is able to receive
+     */
+    @EventListener
+    public void handleMessageQueueSubscribed(MessageQueueSubscribedEvent event) {
+        startFlush(event.userId());
+        // The user's change announced with the connect is ahead of this on the bus
+        clusterBus.broadcast(FLUSH_TOPIC, new FlushRequest(event.userId()));
+    }
+
+    private void startFlush(Long userId) {
+        if (offlineMessageQueueService.hasQueued(userId) && flushing.putIfAbsent(userId, Boolean.TRUE) == null) {
+            executorService.execute(() -> flushOfflineQueue(userId));
+        }
+    }
+
+    private void flushOfflineQueue(Long userId) {
+        int delivered = 0;
+        boolean failed = false;
+        try {
+            // Stops early if the user goes away again, the rest stays queued
+            boolean wasEmpty = false;
+            while (sessionRegistry.isConnected(userId)) {
+                List<ChatNotification> batch = offlineMessageQueueService.pollBatch(userId, flushBatchSize);
+                if (batch.isEmpty()) {
+                    // Atomic with deliverLocally(), which may have queued more meanwhile. Still
+                    // queued after a second empty batch means the queue can't be read.
+                    if (wasEmpty || flushing.computeIfPresent(userId,
+                            (id, flush) -> offlineMessageQueueService.hasQueued(id) ? flush : null) == null) {
+                        failed = wasEmpty;
+                        break;
+                    }
+                    wasEmpty = true;
+                    continue;
+                }
+                wasEmpty = false;
+                batch.forEach(notification -> sendQueued(userId, notification));
+                delivered += batch.size();
+            }
+        } catch (Exception e) {
+            log.error("Failed to flush offline queue of user {}", userId, e);
+            failed = true;
+        } finally {
+            flushing.remove(userId);
+        }
+
+        // The user may have reconnected while this flush was stopping
+        if (!failed && sessionRegistry.isConnected(userId)) {
+            startFlush(userId);
+        }
+
+        if (delivered > 0) {
+            log.info("Delivered {} queued notifications to user {}", delivered, userId);
+        }
+    }
+
+    /**
+     * A queued notification goes to the sessions here, or to a node the user is
+     * connected to now, which tracks it until the client acknowledges it there
+     */
+    private void sendQueued(Long userId, ChatNotification notification) {
+        if (sessionRegistry.isConnectedLocally(userId)) {
+            sendTracked(userId, notification);
+        } else {
+            deliver(userId, notification);
+        }
+    }
+
+    private void sendTracked(Long recipientId, ChatNotification notification) {
+        // Without a sequence number the client has nothing to acknowledge with
+        if (notification.getChatId() != null && notification.getSeq() != null && pending.size() < maxPending) {
+            PendingDelivery delivery = new PendingDelivery(recipientId, notification);
+            String key = pendingKey(recipientId, notification.getChatId(), notification.getSeq());
+            pending.put(key, delivery);
+            scheduleRedelivery(key, delivery);
+        }
+        sessionRegistry.send(recipientId, DESTINATION, notification);
+    }
+
+    private void scheduleRedelivery(String key, PendingDelivery delivery) {
+        synchronized (delivery) {
+            long delay = ackTimeoutMs << Math.min(delivery.attempts, 6);
+            delivery.timer = executorService.schedule(() -> redeliver(key, delivery), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void redeliver(String key, PendingDelivery delivery) {
+        if (pending.get(key) != delivery) {
+            return; // acknowledged meanwhile
+        }
+
+        if (!sessionRegistry.isConnected(delivery.recipientId)) {
+            pending.remove(key, delivery);
+            offlineMessageQueueService.enqueue(delivery.recipientId, delivery.notification);
+            return;
+        }
+
+        if (++delivery.attempts >= maxAttempts) {
+            // The message is stored, the client still gets it through sync
+            pending.remove(key, delivery);
+            log.warn("Giving up redelivery of {} after {} attempts", key, delivery.attempts);
+            return;
+        }
+
+        log.debug("Redelivering {} (attempt {})", key, delivery.attempts + 1);
+        sessionRegistry.send(delivery.recipientId, DESTINATION, delivery.notification);
+        scheduleRedelivery(key, delivery);
+    }
+
+    private static String pendingKey(Long recipientId, String chatId, Long seq) {
+        return recipientId + ":" + chatId + ":" + seq;
+    }
+
+    @PreDestroy
+    private void shutDown() {
+        executorService.shutdownNow();
+    }
+}
@@ -1,22 +1,125 @@
 package com.snoopiechat.backend.service;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import com.snoopiechat.backend.dto.ChatMessagePage;
+import com.snoopiechat.backend.dto.MessageAck;
 import com.snoopiechat.backend.model.ChatMessage;
 import com.snoopiechat.backend.repository.ChatMessageRepo;
+import com.snoopiechat.backend.repository.ChatSequenceRepo;
+import com.snoopiechat.backend.storage.ColdMessageStore;
+import com.snoopiechat.backend.storage.MessageKey;
+import com.snoopiechat.backend.storage.MessageShards;
+import com.snoopiechat.backend.storage.SqliteWriter;
+import com.snoopiechat.backend.util.ExpiringCache;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class ChatMessageService {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private static final int SEQ_BACKFILL_BATCH_SIZE = 500;
+    private static final int CONTENT_MIGRATION_BATCH_SIZE = 500;
+
     private final ChatMessageRepo chatMessageRepo;
     private final ChatRoomService chatRoomService;
+    private final ChatSequenceRepo chatSequenceRepo;
+    private final SqliteWriter sqliteWriter;
+    private final ColdMessageStore coldMessageStore;
+    private final MessageShards messageShards;
+    private final ConversationService conversationService;
+    private final MessageRetentionService messageRetentionService;
+
+    @Value("${chat.dedup.window-seconds:600}")
+    private long dedupWindowSeconds;
+
+    @Value("${chat.dedup.max-entries:100000}")
+    private int dedupMaxEntries;
+
+    // (senderId, clientMessageId) of recently stored messages, answers most resends without a query.
+    // Per node: a resend arriving at another node misses it and is caught by the unique index
+    // instead. Entries only record stored messages, so they can't go stale.
+    private ExpiringCache<String, MessageAck> recentClientMessages;
+
+    /**
+     * Outcome of {@link #saveOnce(ChatMessage)}. {@code message} is null for a
+     * duplicate; {@code ack} is null when the client sent no message id.
+     */
+    public record SaveResult(ChatMessage message, MessageAck ack) {
+        public boolean isDuplicate() {
+            return message == null;
+        }
+    }
+
+    @PostConstruct
+    void initDedupCache() {
+        recentClientMessages = new ExpiringCache<>(dedupMaxEntries, dedupWindowSeconds * 1000);
+    }
+
+    /**
+     * Store a message unless the same client message id was already stored for
+     * this sender. Recent ids are answered from memory, older ones are caught by
+     * the unique index on (sender_id, client_message_id).
+     */
+    public SaveResult saveOnce(ChatMessage chatMessage) {
+        String clientMessageId = chatMessage.getClientMessageId();
+        if (clientMessageId == null || clientMessageId.isBlank() || Boolean.TRUE.equals(chatMessage.getIsDummy())) {
+            return new SaveResult(save(chatMessage), null);
+        }
+
+        String dedupKey = chatMessage.getSenderId() + ":" + clientMessageId;
+        MessageAck seen = recentClientMessages.get(dedupKey);
+        if (seen != null) {
+            return new SaveResult(null, seen);
+        }
+
+        try {
+            ChatMessage saved = save(chatMessage);
+            MessageAck ack = toAck(saved);
+            recentClientMessages.put(dedupKey, ack);
+            return new SaveResult(saved, ack);
+        } catch (DataIntegrityViolationException e) {
+            // Stored before the dedup window or by a concurrent resend
+            ChatMessage existing = messageShards.read(chatMessage.getChatId(),
+                    () -> chatMessageRepo.findBySenderIdAndClientMessageId(chatMessage.getSenderId(), clientMessageId))
+                .orElseThrow(() -> e);
+            MessageAck ack = toAck(existing);
+            recentClientMessages.put(dedupKey, ack);
+            return new SaveResult(null, ack);
+        }
+    }
 
+    private static MessageAck toAck(ChatMessage message) {
+        return new MessageAck(message.getClientMessageId(), message.getId(), message.getChatId(), message.getSeq());
+    }
+
+    /**
+     * Store a message on the writer of its chat's shard. The chat room lives in
+     * the main database, so it is resolved before the shard transaction starts.
+     */
     public ChatMessage save(ChatMessage chatMessage) {
         // Don't save dummy messages to database
         if (chatMessage.getIsDummy() != null && chatMessage.getIsDummy()) {
@@ -30,24 +133,207 @@ public class ChatMessageService {
         ).orElseThrow(); // TODO add exception
         
         chatMessage.setChatId(chatId);
-        return chatMessageRepo.save(chatMessage);
+        int shard = messageShards.shardOf(chatId);
+        ChatMessage saved = sqliteWriter.execute(shard, status -> {
+            chatMessage.setId(nextId(shard));
+            chatMessage.setSeq(nextSeq(chatId));
+            return chatMessageRepo.save(chatMessage);
+        });
+
+        conversationService.recordMessage(saved);
+        return saved;
+    }
+
+    /**
+     * Next id of a shard: ids of shard s are the numbers with id % shards == s,
+     * so messages from different shards never share an id. The counter is a row
+     * in the shard, nodes sharing the database take turns on its write lock.
+     */
+    private long nextId(int shard) {
+        chatMessageRepo.incrementId(shard, messageShards.count());
+        return chatMessageRepo.currentId();
+    }
+
+    private long nextSeq(String chatId) {
+        chatSequenceRepo.increment(chatId);
+        return chatSequenceRepo.currentSeq(chatId);
+    }
+
+    /**
+     * Number the messages stored before sequence numbers existed, in timestamp
+     * order, one small transaction per batch.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillSequenceNumbers() {
+        for (int shard = 0; shard < messageShards.count(); shard++) {
+            backfillSequenceNumbers(shard);
+        }
+    }
+
+    private void backfillSequenceNumbers(int shard) {
+        for (String chatId : MessageShards.callOn(shard, chatMessageRepo::findChatIdsWithoutSeq)) {
+            int numbered;
+            do {
+                numbered = sqliteWriter.execute(shard, status -> {
+                    List<ChatMessage> batch = chatMessageRepo.findWithoutSeq(chatId, Limit.of(SEQ_BACKFILL_BATCH_SIZE));
+                    batch.forEach(message -> message.setSeq(nextSeq(chatId)));
+                    chatMessageRepo.saveAll(batch);
+                    return batch.size();
+                });
+            } while (numbered == SEQ_BACKFILL_BATCH_SIZE);
+
+            log.info("Assigned sequence numbers to legacy messages of chat {}", chatId);
+        }
+    }
+
+    /**
+     * Move message content stored as base64 text into the binary column, one small
+     * transaction per batch. Loading a row already decodes it (see
+     * {@link ChatMessage#loadLegacyContent()}), saving it writes the bytes and
+     * clears the text.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyContent() {
+        int total = 0;
+        for (int shard = 0; shard < messageShards.count(); shard++) {
+            int converted;
+            do {
+                converted = sqliteWriter.execute(shard, status -> {
+                    List<ChatMessage> batch = chatMessageRepo.findWithLegacyContent(Limit.of(CONTENT_MIGRATION_BATCH_SIZE));
+                    chatMessageRepo.saveAll(batch);
+                    return batch.size();
+                });
+                total += converted;
+            } while (converted == CONTENT_MIGRATION_BATCH_SIZE);
+        }
+
+        if (total > 0) {
+            log.info("Converted content of {} legacy messages to binary", total);
+        }
     }
 
-    public List<ChatMessage> findChatMessages(
+    /**
+     * Load one page of a conversation using keyset pagination on (timestamp, id)
+     *
+     * @param before message id to page backwards from (exclusive), or null
+     * @param after message id to page forwards from (exclusive), or null
+     * @param limit page size, clamped to {@link #MAX_PAGE_SIZE}
+     * @return the page with cursors for the neighbouring pages
+     */
+    public ChatMessagePage findChatMessages(
             Long senderId,
-            Long recipientId
+            Long recipientId,
+            Long before,
+            Long after,
+            Integer limit
     ) {
+        if (before != null && after != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Use either 'before' or 'after', not both.");
+        }
+
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
         var chatId = chatRoomService.getChatRoomId(
             senderId, 
             recipientId, 
             false);
-        
-        List<ChatMessage> messages = chatId.map(chatMessageRepo::findByChatIdOrderByTimestampAsc)
-            .orElse(new ArrayList<>());
-            
-        // Filter out any dummy messages (shouldn't be in DB, but just in case)
-        return messages.stream()
-            .filter(msg -> msg.getIsDummy() == null || !msg.getIsDummy())
-            .collect(Collectors.toList());
+
+        if (chatId.isEmpty()) {
+            return new ChatMessagePage(new ArrayList<>(), null, null);
+        }
+
+        // Cold segments are only deleted once entirely expired, hide the expired part.
+        // Retention policies live in the first shard, look them up before switching.
+        LocalDateTime expiredBefore = coldMessageStore.lastKey(chatId.get()).isPresent()
+            ? messageRetentionService.expiryCutoff(chatId.get()).orElse(null)
+            : null;
+
+        // The whole history of a chat is in one shard
+        return messageShards.read(chatId.get(), () -> findPage(chatId.get(), before, after, pageSize, expiredBefore));
+    }
+
+    private ChatMessagePage findPage(String chatId, Long before, Long after, int pageSize, LocalDateTime expiredBefore) {
+        // Fetch one extra row to know whether another page exists
+        int fetch = pageSize + 1;
+
+        if (after != null) {
+            ChatMessage cursor = resolveCursor(chatId, after, expiredBefore);
+            List<ChatMessage> page = findPageAfter(chatId, cursor, fetch, expiredBefore);
+            boolean hasNewer = page.size() > pageSize;
+            List<ChatMessage> messages = hasNewer ? page.subList(0, pageSize) : page;
+
+            return new ChatMessagePage(
+                new ArrayList<>(messages),
+                messages.isEmpty() ? after : messages.get(0).getId(),
+                hasNewer ? messages.get(messages.size() - 1).getId() : null
+            );
+        }
+
+        ChatMessage cursor = before != null ? resolveCursor(chatId, before, expiredBefore) : null;
+        List<ChatMessage> page = findPageBefore(chatId, cursor, fetch, expiredBefore);
+
+        boolean hasOlder = page.size() > pageSize;
+        List<ChatMessage> messages = new ArrayList<>(hasOlder ? page.subList(0, pageSize) : page);
+        Collections.reverse(messages); // queried newest first, returned oldest first
+
+        return new ChatMessagePage(
+            messages,
+            hasOlder ? messages.get(0).getId() : null,
+            before != null ? (messages.isEmpty() ? before : messages.get(messages.size() - 1).getId()) : null
+        );
+    }
+
+    /**
+     * Newest first page before the cursor (or the latest page). The cold tier is
+     * only read when the hot page does not reach past everything stored there.
+     */
+    private List<ChatMessage> findPageBefore(String chatId, ChatMessage cursor, int fetch, LocalDateTime expiredBefore) {
+        List<ChatMessage> hot = cursor == null
+            ? chatMessageRepo.findLatestPage(chatId, Limit.of(fetch))
+            : chatMessageRepo.findPageBefore(chatId, cursor.getTimestamp(), cursor.getId(), Limit.of(fetch));
+
+        Optional<MessageKey> coldEnd = coldMessageStore.lastKey(chatId);
+        if (coldEnd.isEmpty()
+                || (hot.size() == fetch && MessageKey.of(hot.get(fetch - 1)).compareTo(coldEnd.get()) > 0)) {
+            return hot;
+        }
+
+        List<ChatMessage> cold = coldMessageStore.pageBefore(chatId, cursor != null ? MessageKey.of(cursor) : null, fetch,
+            expiredBefore);
+        return merge(hot, cold, MessageKey.ORDER.reversed(), fetch);
+    }
+
+    /**
+     * Oldest first page after the cursor, starting in the cold tier if the cursor is in it
+     */
+    private List<ChatMessage> findPageAfter(String chatId, ChatMessage cursor, int fetch, LocalDateTime expiredBefore) {
+        List<ChatMessage> hot = chatMessageRepo.findPageAfter(chatId, cursor.getTimestamp(), cursor.getId(), Limit.of(fetch));
+
+        Optional<MessageKey> coldEnd = coldMessageStore.lastKey(chatId);
+        if (coldEnd.isEmpty() || MessageKey.of(cursor).compareTo(coldEnd.get()) >= 0) {
+            return hot;
+        }
+
+        List<ChatMessage> cold = coldMessageStore.pageAfter(chatId, MessageKey.of(cursor), fetch, expiredBefore);
+        return merge(hot, cold, MessageKey.ORDER, fetch);
+    }
+
+    // A message interrupted while being tiered can be in both tiers, keep one copy
+    private static List<ChatMessage> merge(List<ChatMessage> hot, List<ChatMessage> cold,
+            Comparator<ChatMessage> order, int limit) {
+        Map<Long, ChatMessage> byId = new LinkedHashMap<>();
+        cold.forEach(message -> byId.put(message.getId(), message));
+        hot.forEach(message -> byId.put(message.getId(), message));
+
+        return byId.values().stream()
+            .sorted(order)
+            .limit(limit)
+            .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private ChatMessage resolveCursor(String chatId, Long messageId, LocalDateTime expiredBefore) {
+        return chatMessageRepo.findById(messageId)
+            .filter(msg -> chatId.equals(msg.getChatId()))
+            .or(() -> coldMessageStore.findById(chatId, messageId, expiredBefore))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page cursor."));
     }
 }
@@ -2,51 +2,83 @@ package com.snoopiechat.backend.service;
 
 import java.util.Optional;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.snoopiechat.backend.model.ChatRoom;
 import com.snoopiechat.backend.repository.ChatRoomRepo;
+import com.snoopiechat.backend.storage.SqliteWriter;
+import com.snoopiechat.backend.util.LruCache;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 
 @Service
 @RequiredArgsConstructor
 public class ChatRoomService {
     private final ChatRoomRepo chatRoomRepo;
+    private final SqliteWriter sqliteWriter;
+
+    @Value("${chat.room-cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    // (senderId, recipientId) -> chatId, so the message hot path skips the chat_room lookup
+    private LruCache<String, String> chatIdCache;
+
+    @PostConstruct
+    void initCache() {
+        chatIdCache = new LruCache<>(cacheMaxSize);
+    }
     
     public Optional<String> getChatRoomId(
             Long senderId,
             Long recipientId,
         boolean createIfNotExists
     ) {
-        return chatRoomRepo.findBySenderIdAndRecipientId(senderId, recipientId)
-            .map(ChatRoom::getChatId)
-            .or(() -> {
-                if (createIfNotExists) {
-                    var chatId = createChatId(senderId, recipientId);
-                    return Optional.of(chatId);
-                }
-                return Optional.empty();
-            });
+        String cached = chatIdCache.get(cacheKey(senderId, recipientId));
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<String> chatId = chatRoomRepo.findFirstBySenderIdAndRecipientIdOrderByIdAsc(senderId, recipientId)
+            .map(ChatRoom::getChatId);
+
+        if (chatId.isEmpty() && createIfNotExists) {
+            chatId = Optional.of(createChatId(senderId, recipientId));
+        }
+
+        // Only hits are cached, a missing room may still be created by the other side
+        chatId.ifPresent(id -> chatIdCache.put(cacheKey(senderId, recipientId), id));
+        return chatId;
     }
 
+    /**
+     * Create both directions of a room in one transaction. The id is derived from the
+     * ordered pair, so concurrent first messages from either side agree on it, and
+     * INSERT OR IGNORE makes the second creator a no-op instead of a duplicate row.
+     */
     private String createChatId(Long senderId, Long recipientId) {
-        var chatId = String.format("%s_%s", senderId, recipientId);
-        ChatRoom senderRecipient = ChatRoom.builder()
-            .chatId(chatId)
-            .senderId(senderId)
-            .recipientId(recipientId)
-            .build();
-
-        ChatRoom recipientSender = ChatRoom.builder()
-        .chatId(chatId)
-        .senderId(recipientId)
-        .recipientId(senderId)
-        .build();
-        
-        chatRoomRepo.save(senderRecipient);
-        chatRoomRepo.save(recipientSender);
+        var chatId = String.format("%s_%s", Math.min(senderId, recipientId), Math.max(senderId, recipientId));
 
-        return chatId;
+        String[] stored = sqliteWriter.execute(status -> {
+            chatRoomRepo.insertIfAbsent(chatId, senderId, recipientId);
+            chatRoomRepo.insertIfAbsent(chatId, recipientId, senderId);
+
+            // Whatever rows ended up stored are authoritative (either may predate this call)
+            return new String[] { storedChatId(senderId, recipientId, chatId), storedChatId(recipientId, senderId, chatId) };
+        });
+
+        chatIdCache.put(cacheKey(recipientId, senderId), stored[1]);
+        return stored[0];
+    }
+
+    private String storedChatId(Long senderId, Long recipientId, String chatId) {
+        return chatRoomRepo.findFirstBySenderIdAndRecipientIdOrderByIdAsc(senderId, recipientId)
+            .map(ChatRoom::getChatId)
+            .orElse(chatId);
+    }
+
+    private static String cacheKey(Long senderId, Long recipientId) {
+        return senderId + "_" + recipientId;
     }
 }
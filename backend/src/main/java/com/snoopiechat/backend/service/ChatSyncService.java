@@ -0,0 +1,174 @@
+package com.snoopiechat.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.snoopiechat.backend.dto.ChatSyncResponse;
+import com.snoopiechat.backend.dto.SyncAckRequest;
+import com.snoopiechat.backend.model.ChatMessage;
+import com.snoopiechat.backend.model.DeviceSyncState;
+import com.snoopiechat.backend.repository.ChatMessageRepo;
+import com.snoopiechat.backend.repository.ChatRoomRepo;
+import com.snoopiechat.backend.repository.ChatSequenceRepo;
+import com.snoopiechat.backend.repository.DeviceSyncStateRepo;
+import com.snoopiechat.backend.storage.ColdMessageStore;
+import com.snoopiechat.backend.storage.MessageKey;
+import com.snoopiechat.backend.storage.MessageShards;
+import com.snoopiechat.backend.storage.SqliteWriter;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Delta sync for reconnecting clients. Each device stores how far it got in every
+ * chat, so a reconnect only transfers the messages it missed. Devices that fell
+ * behind the hot table get the older part from the cold tier.
+ */
+@Service
+@RequiredArgsConstructor
+public class ChatSyncService {
+    public static final int DEFAULT_SYNC_LIMIT = 500;
+    public static final int MAX_SYNC_LIMIT = 2000;
+    private static final int MAX_DEVICE_ID_LENGTH = 64;
+    private static final int COLD_SCAN_PAGE = 500;
+
+    private final ChatMessageRepo chatMessageRepo;
+    private final ChatRoomRepo chatRoomRepo;
+    private final ChatSequenceRepo chatSequenceRepo;
+    private final DeviceSyncStateRepo deviceSyncStateRepo;
+    private final MessageShards messageShards;
+    private final SqliteWriter sqliteWriter;
+    private final ColdMessageStore coldMessageStore;
+    private final MessageRetentionService messageRetentionService;
+
+    /**
+     * Get the messages of all the user's chats newer than the device's high-water marks
+     *
+     * @param since when set, replaces the stored marks for every chat (0 = full resync)
+     * @param limit maximum number of messages, clamped to {@link #MAX_SYNC_LIMIT}
+     */
+    public ChatSyncResponse sync(Long userId, String deviceId, Long since, Integer limit) {
+        validateDeviceId(deviceId);
+        int pageSize = limit == null ? DEFAULT_SYNC_LIMIT : Math.min(Math.max(limit, 1), MAX_SYNC_LIMIT);
+
+        // Start of every chat, in chat order
+        Map<String, Long> marks = new TreeMap<>();
+        chatRoomRepo.findChatIdsBySenderId(userId).forEach(chatId -> marks.put(chatId, since != null ? since : 0L));
+        if (since == null) {
+            for (DeviceSyncState state : deviceSyncStateRepo.findByUserIdAndDeviceId(userId, deviceId)) {
+                marks.computeIfPresent(state.getChatId(), (chatId, mark) -> state.getLastSeq());
+            }
+        }
+
+        Map<String, Long> lastSeqs = lastSeqs(marks.keySet());
+
+        // One extra row tells us whether the client has to call again
+        List<ChatMessage> rows = new ArrayList<>();
+        for (Map.Entry<String, Long> mark : marks.entrySet()) {
+            String chatId = mark.getKey();
+            if (lastSeqs.getOrDefault(chatId, 0L) <= mark.getValue()) {
+                continue;
+            }
+            int remaining = pageSize + 1 - rows.size();
+            List<ChatMessage> hot = messageShards.read(chatId,
+                () -> chatMessageRepo.findAfterSeq(chatId, mark.getValue(), Limit.of(remaining)));
+            rows.addAll(withColdTier(chatId, mark.getValue(), hot, remaining));
+            if (rows.size() > pageSize) {
+                break;
+            }
+        }
+        boolean hasMore = rows.size() > pageSize;
+        List<ChatMessage> messages = new ArrayList<>(hasMore ? rows.subList(0, pageSize) : rows);
+
+        Map<String, Long> highWaterMarks = new LinkedHashMap<>();
+        for (ChatMessage message : messages) {
+            highWaterMarks.merge(message.getChatId(), message.getSeq(), Math::max);
+        }
+
+        return new ChatSyncResponse(messages, highWaterMarks, hasMore);
+    }
+
+    /**
+     * Store the marks a device confirmed after applying a sync response
+     */
+    public void acknowledge(Long userId, SyncAckRequest request) {
+        validateDeviceId(request.getDeviceId());
+        if (request.getHighWaterMarks() == null) {
+            return;
+        }
+
+        sqliteWriter.execute(status -> {
+            request.getHighWaterMarks().forEach((chatId, seq) -> {
+                if (chatId != null && seq != null && seq > 0) {
+                    deviceSyncStateRepo.upsertHighWaterMark(userId, request.getDeviceId(), chatId, seq);
+                }
+            });
+            return null;
+        });
+    }
+
+    /**
+     * The messages after {@code after} from both tiers, in sequence order. Tiering
+     * moves the oldest messages out of the table, so when the hot rows don't
+     * continue right after the mark the gap is read from the cold tier. Segments
+     * aren't indexed by sequence number and are scanned, which only devices that
+     * fell that far behind pay for.
+     */
+    private List<ChatMessage> withColdTier(String chatId, long after, List<ChatMessage> hot, int limit) {
+        if ((!hot.isEmpty() && hot.get(0).getSeq() == after + 1) || coldMessageStore.lastKey(chatId).isEmpty()) {
+            return hot;
+        }
+
+        long before = hot.isEmpty() ? Long.MAX_VALUE : hot.get(0).getSeq();
+        LocalDateTime expiredBefore = messageRetentionService.expiryCutoff(chatId).orElse(null);
+        // A message interrupted while being tiered can be in both tiers, keep one copy
+        Map<Long, ChatMessage> bySeq = new TreeMap<>();
+        MessageKey cursor = new MessageKey(null, Long.MIN_VALUE);
+        List<ChatMessage> page;
+        do {
+            page = coldMessageStore.pageAfter(chatId, cursor, COLD_SCAN_PAGE, expiredBefore);
+            for (ChatMessage message : page) {
+                Long seq = message.getSeq();
+                if (seq != null && seq > after && seq < before && !Boolean.TRUE.equals(message.getIsDummy())) {
+                    bySeq.put(seq, message);
+                }
+            }
+            if (!page.isEmpty()) {
+                cursor = MessageKey.of(page.get(page.size() - 1));
+            }
+        } while (page.size() == COLD_SCAN_PAGE);
+        hot.forEach(message -> bySeq.put(message.getSeq(), message));
+
+        return bySeq.values().stream().limit(limit).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Last sequence number of each chat, one lookup per shard. Chats without new
+     * messages are skipped without touching chat_message.
+     */
+    private Map<String, Long> lastSeqs(Iterable<String> chatIds) {
+        Map<Integer, List<String>> byShard = new HashMap<>();
+        chatIds.forEach(chatId -> byShard.computeIfAbsent(messageShards.shardOf(chatId), shard -> new ArrayList<>()).add(chatId));
+
+        Map<String, Long> lastSeqs = new HashMap<>();
+        byShard.forEach((shard, ids) -> MessageShards.callOn(shard, () -> chatSequenceRepo.findAllById(ids))
+            .forEach(sequence -> lastSeqs.put(sequence.getChatId(), sequence.getLastSeq())));
+        return lastSeqs;
+    }
+
+    private void validateDeviceId(String deviceId) {
+        if (deviceId == null || deviceId.isBlank() || deviceId.length() > MAX_DEVICE_ID_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A device id of at most 64 characters is required.");
+        }
+    }
+}
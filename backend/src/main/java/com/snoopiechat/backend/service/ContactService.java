@@ -1,33 +1,52 @@
 package com.snoopiechat.backend.service;
 
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import com.snoopiechat.backend.cluster.ClusterBus;
 import com.snoopiechat.backend.dto.ContactDTO;
+import com.snoopiechat.backend.dto.ContactPage;
 import com.snoopiechat.backend.dto.FirendRequestDTO;
-import com.snoopiechat.backend.model.ChatMessage;
+import com.snoopiechat.backend.dto.FriendRequestEvent;
+import com.snoopiechat.backend.dto.FriendRequestPage;
+import com.snoopiechat.backend.dto.UserSummary;
 import com.snoopiechat.backend.model.Contact;
 import com.snoopiechat.backend.model.Users;
 import com.snoopiechat.backend.model.FriendRequest.FriendRequest;
 import com.snoopiechat.backend.model.FriendRequest.RequestStatus;
-import com.snoopiechat.backend.repository.ChatMessageRepo;
 import com.snoopiechat.backend.repository.ContactRepo;
 import com.snoopiechat.backend.repository.FriendRequestRepo;
 import com.snoopiechat.backend.repository.UserRepo;
+import com.snoopiechat.backend.storage.SqliteWriter;
+import com.snoopiechat.backend.util.LruCache;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import jakarta.annotation.PostConstruct;
 
 @Service
 public class ContactService {
 
-    @SuppressWarnings("unused")
-    private static final Logger logger = LoggerFactory.getLogger(ContactService.class);
+    public static final String FRIEND_REQUEST_DESTINATION = "/queue/friend-requests";
+    private static final String PENDING_COUNT_TOPIC = "contacts.pending-count";
+    private static final int COUNT_LOCK_STRIPES = 64;
+
+    public record PendingCountChanged(Long userId) {
+    }
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    public static final int DEFAULT_SEARCH_LIMIT = 20;
+    public static final int MAX_SEARCH_LIMIT = 50;
+
+    // U+10FFFF sorts after every character, closing the prefix range
+    private static final String HIGHEST_CHARACTER = new String(Character.toChars(Character.MAX_CODE_POINT));
 
     @Autowired
     private ContactRepo contactRepo;
@@ -36,55 +55,77 @@ public class ContactService {
     private UserRepo userRepo;
 
     @Autowired
-    private ChatMessageRepo chatMessageRepo;
+    private FriendRequestRepo friendRequestRepo;
 
     @Autowired
-    private FriendRequestRepo friendRequestRepo;
+    private SqliteWriter sqliteWriter;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private UserSessionRegistry sessionRegistry;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    @Value("${chat.friend-requests.count-cache-size:10000}")
+    private int countCacheSize;
+
+    // userId -> pending friend requests, the least recently read are evicted. A
+    // change of a user's requests commits and moves the cached count by one while
+    // holding the lock of the user's stripe, which loads hold too, so a load sees
+    // either neither or both. Other nodes drop their entry instead.
+    private LruCache<Long, Long> pendingCounts;
+    private final Object[] countLocks = new Object[COUNT_LOCK_STRIPES];
+
+    @PostConstruct
+    void init() {
+        pendingCounts = new LruCache<>(countCacheSize);
+        for (int i = 0; i < countLocks.length; i++) {
+            countLocks[i] = new Object();
+        }
+        clusterBus.subscribe(PENDING_COUNT_TOPIC, PendingCountChanged.class,
+                (node, change) -> pendingCounts.remove(change.userId()));
+    }
 
     /**
      * Convert Contact entity to ContactDTO
      */
-    private ContactDTO convertToDTO(Contact contact, ChatMessage lastMessage) {
+    private ContactDTO convertToDTO(Contact contact) {
+        Long userId = contact.getUser().getId();
         ContactDTO dto = new ContactDTO(
                 contact.getContact().getId(),
                 contact.getContact().getUsername(),
                 contact.getContact().getEmail(),
                 contact.isBlocked(),
-                lastMessage != null ? lastMessage.getContent() : null,
-                lastMessage != null ? lastMessage.getTimestamp() : null,
-                false // placeholder for online
+                null,
+                null,
+                0,
+                presenceService.isOnline(userId, contact.getContact().getId())
         );
 
         return dto;
     }
     
     /**
-     * Get all contacts for a user
+     * Get a page of a user's contacts, ordered by username
      * 
      * @param userId the user's ID
-     * @return list of contact DTOs
+     * @param after username of the last contact of the previous page, or null
+     * @param limit page size, clamped to {@link #MAX_PAGE_SIZE}
+     * @return the page with the cursor of the next one
      */
-    public List<ContactDTO> getUserContacts(Long userId) {
-        Users user = userRepo.findById(userId.intValue())
-            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
-        
-        List<Contact> contacts = contactRepo.findByUser(user);
-
-        return contacts.stream()
-                .map(contact -> {
-                    Long senderId = user.getId();
-                    Long recipientId = contact.getId();
-                    // Build chatID
-                    String chatId = senderId < recipientId
-                            ? senderId + "_" + recipientId
-                            : recipientId + "_" + senderId;
-
-                    // Get the last message between user and contact
-                    ChatMessage lastMessage = chatMessageRepo.findTopByChatIdOrderByTimestampDesc(chatId);
-
-                    return convertToDTO(contact, lastMessage);
-                })
-            .collect(Collectors.toList());
+    public ContactPage getUserContacts(Long userId, String after, Integer limit) {
+        int pageSize = pageSize(limit);
+        List<ContactDTO> contacts = contactRepo.findContactPage(userId, after == null ? "" : after, Limit.of(pageSize + 1));
+
+        String nextCursor = null;
+        if (contacts.size() > pageSize) {
+            contacts = contacts.subList(0, pageSize);
+            nextCursor = contacts.get(pageSize - 1).getUsername();
+        }
+        return new ContactPage(presenceService.annotate(userId, contacts), nextCursor);
     }
     
     /**
@@ -92,29 +133,22 @@ public class ContactService {
      * 
      * @param userId the current user's ID
      * @param query the search query
-     * @return list of users matching the query, excluding the current user and already added contacts
+     * @param limit maximum number of results, clamped to {@link #MAX_SEARCH_LIMIT}
+     * @return best matching users, excluding the current user and already added contacts
      */
-    public List<Users> searchUsers(Long userId, String query) {
+    public List<UserSummary> searchUsers(Long userId, String query, Integer limit) {
         if (query == null || query.trim().isEmpty()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search query cannot be empty");
         }
-        
-        Users currentUser = userRepo.findById(userId.intValue())
-            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
-        
-        // Get all users whose username contains the query (case insensitive)
-        List<Users> matchingUsers = userRepo.findByUsernameContainingIgnoreCase(query);
-        
-        // Get the user's existing contacts
-        List<Contact> existingContacts = contactRepo.findByUser(currentUser);
-        List<Long> contactIds = existingContacts.stream()
-            .map(contact -> contact.getContact().getId())
-            .collect(Collectors.toList());
-        
-        // Filter out the current user and existing contacts
-        return matchingUsers.stream()
-            .filter(user -> !user.getId().equals(userId) && !contactIds.contains(user.getId()))
-            .collect(Collectors.toList());
+
+        String term = query.trim();
+        int size = limit == null ? DEFAULT_SEARCH_LIMIT : Math.min(Math.max(limit, 1), MAX_SEARCH_LIMIT);
+
+        // The trigram index can't match fewer than three characters
+        if (term.codePointCount(0, term.length()) < 3) {
+            return userRepo.searchByPrefix(term, term + HIGHEST_CHARACTER, userId, size);
+        }
+        return userRepo.searchByTrigram("\"" + term.replace("\"", "\"\"") + "\"", term, userId, size);
     }
     
     /**
@@ -149,7 +183,10 @@ public class ContactService {
         friendRequest.setSender(user);
         friendRequest.setRecipient(contactUser);
 
-        friendRequestRepo.save(friendRequest);
+        changePendingCount(contactUser.getId(), 1,
+                () -> sqliteWriter.execute(status -> friendRequestRepo.save(friendRequest)));
+        notifyFriendRequest(contactUser.getId(), friendRequest.getId(), user.getUsername(), RequestStatus.PENDING,
+                getPendingFriendRequestsCount(contactUser.getId()));
 
         return "Friend Request send succesfully";
     }
@@ -169,7 +206,10 @@ public class ContactService {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Contact does not belong to this user");
         }
         
-        contactRepo.delete(contact);
+        sqliteWriter.execute(status -> {
+            contactRepo.delete(contact);
+            return null;
+        });
     }
     
     /**
@@ -190,9 +230,9 @@ public class ContactService {
         
         // Toggle blocked status
         contact.setBlocked(!contact.isBlocked());
-        Contact updatedContact = contactRepo.save(contact);
+        Contact updatedContact = sqliteWriter.execute(status -> contactRepo.save(contact));
         
-        return convertToDTO(updatedContact, null);
+        return convertToDTO(updatedContact);
     }
 
     public ContactDTO acceptContact(Users user, Long requestId) {
@@ -204,6 +244,10 @@ public class ContactService {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "This friend request is not yours.");
         }
 
+        if (request.getStatus() != RequestStatus.PENDING) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "This friend request was already answered.");
+        }
+
         request.setStatus(RequestStatus.ACCEPTED);
 
         Users senderUser = userRepo.findById(request.getSender().getId());
@@ -213,40 +257,101 @@ public class ContactService {
                     "Contact associated to the friend request was not found");
         }
 
-        Contact senderContact = new Contact();
-        senderContact.setUser(user);
-        senderContact.setContact(senderUser);
+        // Removing a contact only drops it from one side, the other may still have it
+        Contact senderContact = contactRepo.findByUserAndContact(user, senderUser)
+                .orElseGet(() -> newContact(user, senderUser));
+        Contact recipientContact = contactRepo.findByUserAndContact(senderUser, user)
+                .orElseGet(() -> newContact(senderUser, user));
+
+        // Both contact rows and the request status change together. The writer runs one
+        // transaction at a time, a concurrent accept of the same request is caught here.
+        changePendingCount(user.getId(), -1, () -> sqliteWriter.execute(status -> {
+            if (friendRequestRepo.findById(requestId).map(FriendRequest::getStatus).orElse(null)
+                    != RequestStatus.PENDING) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "This friend request was already answered.");
+            }
+            contactRepo.save(senderContact);
+            contactRepo.save(recipientContact);
+            return friendRequestRepo.save(request);
+        }));
+
+        // The sender's other devices and the acceptor's own ones
+        notifyFriendRequest(senderUser.getId(), requestId, user.getUsername(), RequestStatus.ACCEPTED,
+                getPendingFriendRequestsCount(senderUser.getId()));
+        notifyFriendRequest(user.getId(), requestId, senderUser.getUsername(), RequestStatus.ACCEPTED,
+                getPendingFriendRequestsCount(user.getId()));
+
+        return convertToDTO(senderContact);
+    }
 
-        Contact recipientContact = new Contact();
-        recipientContact.setUser(senderUser);
-        recipientContact.setContact(user);
+    private static Contact newContact(Users user, Users contactUser) {
+        Contact contact = new Contact();
+        contact.setUser(user);
+        contact.setContact(contactUser);
+        return contact;
+    }
+
+    /**
+     * Get a page of the pending friend requests of a user, newest first
+     * 
+     * @param before id of the last request of the previous page, or null
+     * @param limit page size, clamped to {@link #MAX_PAGE_SIZE}
+     */
+    public FriendRequestPage getPendingFriendRequests(Long userId, Long before, Integer limit) {
+        int pageSize = pageSize(limit);
+        List<FirendRequestDTO> requests = friendRequestRepo.findRequestsTo(userId, RequestStatus.PENDING,
+                before == null ? Long.MAX_VALUE : before, Limit.of(pageSize + 1));
+
+        Long nextCursor = null;
+        if (requests.size() > pageSize) {
+            requests = requests.subList(0, pageSize);
+            nextCursor = requests.get(pageSize - 1).getId();
+        }
+        return new FriendRequestPage(requests, nextCursor);
+    }
 
-        contactRepo.save(senderContact);
-        contactRepo.save(recipientContact);
-        friendRequestRepo.save(request);
+    private static int pageSize(Integer limit) {
+        return limit == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+    }
 
-        return convertToDTO(senderContact, null);
+    /**
+     * Run {@code change} of the user's pending requests and move their cached count by {@code delta}
+     */
+    private <T> T changePendingCount(Long userId, int delta, Supplier<T> change) {
+        T result;
+        synchronized (countLockFor(userId)) {
+            result = change.get();
+            pendingCounts.computeIfPresent(userId, (id, count) -> Math.max(0, count + delta));
+        }
+        clusterBus.broadcast(PENDING_COUNT_TOPIC, new PendingCountChanged(userId));
+        return result;
     }
 
-    public List<FirendRequestDTO> getPendingFriendRequests(Users user) {
-        List<FriendRequest> pendingRequests = friendRequestRepo.findByRecipientAndStatus(user, RequestStatus.PENDING);
+    public Long getPendingFriendRequestsCount(Long userId) {
+        synchronized (countLockFor(userId)) {
+            Long count = pendingCounts.get(userId);
+            if (count == null) {
+                count = friendRequestRepo.countByRecipientIdAndStatus(userId, RequestStatus.PENDING);
+                pendingCounts.put(userId, count);
+            }
+            return count;
+        }
+    }
 
-        return pendingRequests.stream()
-                .map(request -> new FirendRequestDTO(
-                        request.getId(),
-                        request.getSender().getUsername()))
-                .collect(Collectors.toList());
+    private Object countLockFor(Long userId) {
+        return countLocks[Math.floorMod(userId.hashCode(), countLocks.length)];
     }
 
-    public Long getPendingFriendRequestsCount(Users user) {
-        return friendRequestRepo.countByRecipientAndStatus(user, RequestStatus.PENDING);
+    private void notifyFriendRequest(Long userId, Long requestId, String username, RequestStatus status,
+            long pendingCount) {
+        sessionRegistry.send(userId, FRIEND_REQUEST_DESTINATION,
+                new FriendRequestEvent(requestId, username, status, pendingCount));
     }
 
-    public ContactDTO getContactData(Users user, Long contactId) {
-        Users userContact = userRepo.findById(contactId);
-        Contact contact = contactRepo.findByUserAndContact(user, userContact)
+    public ContactDTO getContactData(Long userId, Long contactId) {
+        ContactDTO contact = contactRepo.findContactEntry(userId, contactId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Contact Data not found."));
-
-        return convertToDTO(contact, null);
+        contact.setOnline(presenceService.isOnline(userId, contactId));
+        return contact;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+package com.snoopiechat.backend.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.snoopiechat.backend.model.ChatMessage;
+import com.snoopiechat.backend.repository.ConversationSummaryRepo;
+import com.snoopiechat.backend.storage.SqliteWriter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the conversation list read model up to date: every stored message
+ * updates the entries of both participants, read acknowledgements move the
+ * reader's mark. The entries live in the main database, next to the contacts.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationService {
+    private final ConversationSummaryRepo conversationSummaryRepo;
+    private final SqliteWriter sqliteWriter;
+
+    /**
+     * Record a stored message. The upserts are idempotent and order independent,
+     * so a failure only leaves the entry behind until the next message.
+     */
+    public void recordMessage(ChatMessage message) {
+        try {
+            sqliteWriter.execute(status -> {
+                conversationSummaryRepo.upsertLastMessage(message.getSenderId(), message.getRecipientId(),
+                    message.getChatId(), message.getId(), message.getSeq(), message.getSeq(),
+                    message.getContent(), message.getTimestamp());
+                return conversationSummaryRepo.upsertLastMessage(message.getRecipientId(), message.getSenderId(),
+                    message.getChatId(), message.getId(), message.getSeq(), 0L,
+                    message.getContent(), message.getTimestamp());
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not update the conversation summaries of chat {}", message.getChatId(), e);
+        }
+    }
+
+    /**
+     * Mark the conversation with {@code peerId} read up to {@code seq}
+     *
+     * @param seq last read sequence number, null for everything
+     */
+    public void markRead(Long userId, Long peerId, Long seq) {
+        if (seq != null && seq < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Sequence number must be positive.");
+        }
+
+        int updated = sqliteWriter.execute(status ->
+            conversationSummaryRepo.markRead(userId, peerId, seq == null ? Long.MAX_VALUE : seq));
+        if (updated == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Chat not found");
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.snoopiechat.backend.service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -10,7 +11,6 @@ import java.util.concurrent.TimeUnit;
 import java.security.SecureRandom;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import com.snoopiechat.backend.dto.ChatNotification;
@@ -25,7 +25,7 @@ public class DummyTrafficService {
     private DummyMessageService dummyMessageService;
     
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private UserSessionRegistry sessionRegistry;
     
     @Autowired
     private ChatRoomService chatRoomService;
@@ -106,7 +106,7 @@ public class DummyTrafficService {
             .id(-1L) // Use negative ID to indicate dummy message
             .senderId(senderId)
             .recipientId(recipientId)
-            .content(dummyContent)
+            .content(dummyContent.getBytes(StandardCharsets.UTF_8))
             .timestamp(timestamp)
             .isDummy(true)
             .build();
@@ -117,17 +117,9 @@ public class DummyTrafficService {
         log.debug("Sending dummy message from {} to {}: {}", senderId, recipientId, dummyContent);
         
         try {
-            messagingTemplate.convertAndSendToUser(
-                recipientId.toString(),
-                destination,
-                dummyNotification
-            );
-            
-            messagingTemplate.convertAndSendToUser(
-                senderId.toString(),
-                destination,
-                dummyNotification
-            );
+            // Every device of both users, real messages reach all of them too
+            sessionRegistry.send(recipientId, destination, dummyNotification);
+            sessionRegistry.send(senderId, destination, dummyNotification);
         } catch (Exception e) {
             log.error("Failed to send dummy message", e);
         }
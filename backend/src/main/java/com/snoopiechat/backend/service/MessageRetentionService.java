@@ -0,0 +1,254 @@
+package com.snoopiechat.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.snoopiechat.backend.model.ChatRetentionPolicy;
+import com.snoopiechat.backend.repository.ChatMessageRepo;
+import com.snoopiechat.backend.repository.ChatRetentionPolicyRepo;
+import com.snoopiechat.backend.storage.ColdMessageStore;
+import com.snoopiechat.backend.storage.MessageShards;
+import com.snoopiechat.backend.storage.SqliteWriter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Background compactor enforcing message retention: the global maximum age and
+ * the per-chat disappearing message TTLs. Deletes run in small transactions so
+ * writers get the SQLite write lock between batches, freed pages are then
+ * returned to the file system with an incremental vacuum. Cold segments are
+ * dropped once all their messages expired. Every message shard is compacted
+ * on its own.
+ *
+ * Incremental vacuum needs auto_vacuum=INCREMENTAL, which an existing database
+ * only gets through a full VACUUM that locks out writers while it rewrites the
+ * file. That conversion is a maintenance step, run at startup only with
+ * chat.retention.convert-auto-vacuum=true; until then freed pages are reused
+ * but the file does not shrink.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MessageRetentionService {
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final ChatMessageRepo chatMessageRepo;
+    private final ChatRetentionPolicyRepo chatRetentionPolicyRepo;
+    private final ChatRoomService chatRoomService;
+    private final SqliteWriter sqliteWriter;
+    private final JdbcTemplate jdbcTemplate;
+    private final ColdMessageStore coldMessageStore;
+    private final MessageShards messageShards;
+    private final MeterRegistry meterRegistry;
+
+    // 0 keeps messages forever
+    @Value("${chat.retention.max-age-days:0}")
+    private long maxAgeDays;
+
+    @Value("${chat.retention.interval-seconds:60}")
+    private long intervalSeconds;
+
+    @Value("${chat.retention.batch-size:500}")
+    private int batchSize;
+
+    // Upper bound of pages released per vacuum step
+    @Value("${chat.retention.vacuum-pages:1000}")
+    private int vacuumPages;
+
+    // One-time full VACUUM of databases not in incremental auto vacuum mode yet
+    @Value("${chat.retention.convert-auto-vacuum:false}")
+    private boolean convertAutoVacuum;
+
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+
+    private Counter deletedRows;
+    private Counter vacuumedPages;
+    private Timer compactionTimer;
+    private boolean[] incrementalVacuum;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        deletedRows = meterRegistry.counter("chat.retention.deleted.rows");
+        vacuumedPages = meterRegistry.counter("chat.retention.vacuumed.pages");
+        compactionTimer = meterRegistry.timer("chat.retention.compaction");
+        incrementalVacuum = new boolean[messageShards.count()];
+
+        executorService.execute(() -> {
+            for (int shard = 0; shard < messageShards.count(); shard++) {
+                incrementalVacuum[shard] = MessageShards.callOn(shard, this::enableIncrementalVacuum);
+            }
+        });
+        executorService.scheduleWithFixedDelay(this::compact, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Set the disappearing message TTL of the chat between two users
+     *
+     * @param ttlSeconds message lifetime, null or 0 to keep messages
+     */
+    public void setChatTtl(Long userId, Long peerId, Long ttlSeconds) {
+        String chatId = chatRoomService.getChatRoomId(userId, peerId, false)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Chat not found"));
+
+        if (ttlSeconds != null && ttlSeconds < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "TTL must be positive.");
+        }
+
+        sqliteWriter.execute(status -> {
+            if (ttlSeconds == null || ttlSeconds == 0) {
+                chatRetentionPolicyRepo.deleteById(chatId);
+            } else {
+                chatRetentionPolicyRepo.save(new ChatRetentionPolicy(chatId, ttlSeconds));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Messages of the chat older than the returned time are expired, by the chat
+     * TTL or the global maximum age, whichever is stricter. Compaction removes
+     * them eventually; until then readers use this to hide them.
+     */
+    public Optional<LocalDateTime> expiryCutoff(String chatId) {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<LocalDateTime> cutoff = chatRetentionPolicyRepo.findById(chatId)
+            .map(policy -> now.minusSeconds(policy.getTtlSeconds()));
+        if (maxAgeDays > 0) {
+            LocalDateTime maxAge = now.minusDays(maxAgeDays);
+            if (cutoff.isEmpty() || cutoff.get().isBefore(maxAge)) {
+                cutoff = Optional.of(maxAge);
+            }
+        }
+        return cutoff;
+    }
+
+    /**
+     * Auto vacuum can only be switched to incremental by rebuilding the file, a
+     * full VACUUM that blocks every writer until it is done. It only runs when
+     * chat.retention.convert-auto-vacuum is set.
+     *
+     * @return whether the database vacuums incrementally
+     */
+    private boolean enableIncrementalVacuum() {
+        try {
+            Integer mode = jdbcTemplate.queryForObject("PRAGMA auto_vacuum", Integer.class);
+            if (mode != null && mode == AUTO_VACUUM_INCREMENTAL) {
+                return true;
+            }
+            if (!convertAutoVacuum) {
+                log.info("Database is not in incremental auto vacuum mode, freed pages stay in the file. "
+                    + "Set chat.retention.convert-auto-vacuum=true for a one-time VACUUM during maintenance.");
+                return false;
+            }
+
+            log.info("Switching database to incremental auto vacuum, writes wait until the VACUUM is done");
+            jdbcTemplate.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            jdbcTemplate.execute("VACUUM");
+            return true;
+        } catch (Exception e) {
+            log.warn("Could not enable incremental vacuum, freed pages stay in the file", e);
+            return false;
+        }
+    }
+
+    void compact() {
+        try {
+            long started = System.nanoTime();
+            long[] deleted = new long[messageShards.count()];
+            long coldDeleted = 0;
+
+            LocalDateTime now = LocalDateTime.now();
+            for (ChatRetentionPolicy policy : chatRetentionPolicyRepo.findAll()) {
+                LocalDateTime cutoff = now.minusSeconds(policy.getTtlSeconds());
+                int shard = messageShards.shardOf(policy.getChatId());
+                deleted[shard] += deleteInBatches(shard, () -> chatMessageRepo.deleteChatBatchOlderThan(policy.getChatId(), cutoff, batchSize));
+                coldDeleted += countDeleted(coldMessageStore.dropOlderThan(policy.getChatId(), cutoff));
+            }
+
+            if (maxAgeDays > 0) {
+                LocalDateTime cutoff = now.minusDays(maxAgeDays);
+                for (int shard = 0; shard < deleted.length; shard++) {
+                    deleted[shard] += deleteInBatches(shard, () -> chatMessageRepo.deleteBatchOlderThan(cutoff, batchSize));
+                }
+                coldDeleted += countDeleted(coldMessageStore.dropAllOlderThan(cutoff));
+            }
+
+            long total = coldDeleted;
+            long pages = 0;
+            for (int shard = 0; shard < deleted.length; shard++) {
+                total += deleted[shard];
+                if (deleted[shard] > 0 && incrementalVacuum[shard]) {
+                    pages += MessageShards.callOn(shard, this::vacuum);
+                }
+            }
+            long elapsed = System.nanoTime() - started;
+            compactionTimer.record(elapsed, TimeUnit.NANOSECONDS);
+
+            if (total > 0) {
+                log.info("Retention removed {} messages and released {} pages in {} ms",
+                    total, pages, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+        } catch (Exception e) {
+            log.error("Retention compaction failed", e);
+        }
+    }
+
+    private long deleteInBatches(int shard, IntSupplier deleteBatch) {
+        long total = 0;
+        int deleted;
+        do {
+            deleted = sqliteWriter.execute(shard, status -> deleteBatch.getAsInt());
+            total += deleted;
+            deletedRows.increment(deleted);
+        } while (deleted == batchSize);
+        return total;
+    }
+
+    private long countDeleted(long rows) {
+        deletedRows.increment(rows);
+        return rows;
+    }
+
+    private long vacuum() {
+        long released = 0;
+        long free;
+        while ((free = freePages()) > 0) {
+            // Each statement step releases a page, so the result has to be drained
+            jdbcTemplate.query("PRAGMA incremental_vacuum(" + Math.min(free, vacuumPages) + ")", rs -> { });
+            long left = freePages();
+            if (left >= free) {
+                break;
+            }
+            released += free - left;
+        }
+        vacuumedPages.increment(released);
+        return released;
+    }
+
+    private long freePages() {
+        Long free = jdbcTemplate.queryForObject("PRAGMA freelist_count", Long.class);
+        return free == null ? 0 : free;
+    }
+
+    @PreDestroy
+    private void shutDown() {
+        executorService.shutdownNow();
+    }
+}
@@ -0,0 +1,98 @@
+package com.snoopiechat.backend.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import com.snoopiechat.backend.model.ChatMessage;
+import com.snoopiechat.backend.repository.ChatMessageRepo;
+import com.snoopiechat.backend.storage.ColdMessageStore;
+import com.snoopiechat.backend.storage.MessageShards;
+import com.snoopiechat.backend.storage.SqliteWriter;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Moves messages older than chat.cold-storage.age-days out of SQLite into the
+ * segment files of {@link ColdMessageStore}, keeping the hot table small.
+ * A segment is written and synced before its rows are deleted, so a crash in
+ * between leaves a message in both tiers, never in none.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MessageTieringService {
+    private final ChatMessageRepo chatMessageRepo;
+    private final ColdMessageStore coldMessageStore;
+    private final SqliteWriter sqliteWriter;
+    private final MessageShards messageShards;
+
+    // 0 keeps the whole history in SQLite
+    @Value("${chat.cold-storage.age-days:0}")
+    private long ageDays;
+
+    @Value("${chat.cold-storage.interval-minutes:60}")
+    private long intervalMinutes;
+
+    // Most messages written to one segment
+    @Value("${chat.cold-storage.segment-size:10000}")
+    private int segmentSize;
+
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (ageDays > 0) {
+            executorService.scheduleWithFixedDelay(this::moveColdMessages, 0, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    void moveColdMessages() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(ageDays);
+        for (int shard = 0; shard < messageShards.count(); shard++) {
+            moveColdMessages(shard, cutoff);
+        }
+    }
+
+    private void moveColdMessages(int shard, LocalDateTime cutoff) {
+        for (String chatId : MessageShards.callOn(shard, () -> chatMessageRepo.findChatIdsWithMessagesBefore(cutoff))) {
+            try {
+                int moved = 0;
+                List<ChatMessage> batch;
+                do {
+                    batch = MessageShards.callOn(shard, () -> chatMessageRepo.findOlderThan(chatId, cutoff, Limit.of(segmentSize)));
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    coldMessageStore.append(chatId, batch);
+
+                    List<Long> ids = batch.stream().map(ChatMessage::getId).toList();
+                    sqliteWriter.execute(shard, status -> {
+                        chatMessageRepo.deleteAllByIdInBatch(ids);
+                        return null;
+                    });
+                    moved += batch.size();
+                } while (batch.size() == segmentSize);
+
+                log.info("Moved {} messages of chat {} to cold storage", moved, chatId);
+            } catch (Exception e) {
+                log.error("Failed to move messages of chat {} to cold storage", chatId, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    private void shutDown() {
+        executorService.shutdownNow();
+    }
+}
@@ -0,0 +1,271 @@
+package com.snoopiechat.backend.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snoopiechat.backend.dto.ChatNotification;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Store-and-forward queues for recipients that are not connected when the mixnet
+ * delivers their message. Each user gets a small in-memory queue; once it is full
+ * further notifications are appended to a per-user spill file. The delivery
+ * service drains them in batches when the user comes back. A graceful shutdown
+ * writes the in-memory part to the spill files, so a restart loses nothing; a
+ * crash loses the in-memory part (up to chat.offline-queue.memory-capacity per
+ * user) but not the spilled one. The messages themselves are stored before they
+ * are queued, so clients still get them through delta sync and the history.
+ */
+@Service
+@Slf4j
+public class OfflineMessageQueueService {
+    private static final String SPILL_FILE_SUFFIX = ".jsonl";
+    private static final String OFFSET_FILE_SUFFIX = ".offset";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${chat.offline-queue.memory-capacity:100}")
+    private int memoryCapacity;
+
+    @Value("${chat.offline-queue.max-spilled:10000}")
+    private int maxSpilled;
+
+    @Value("${chat.offline-queue.spill-dir:offline-queue}")
+    private String spillDirectory;
+
+    private Path spillDir;
+    private final Map<Long, UserQueue> queues = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() throws IOException {
+        spillDir = Paths.get(spillDirectory);
+        Files.createDirectories(spillDir);
+    }
+
+    /**
+     * Hold a notification until the user is connected again
+     */
+    public void enqueue(Long userId, ChatNotification notification) {
+        // Offer inside compute so pollBatch cannot release the queue in between
+        queues.compute(userId, (id, queue) -> {
+            UserQueue target = queue != null ? queue : openQueue(id);
+            try {
+                target.offer(notification);
+            } catch (IOException e) {
+                // The message itself is persisted, the client picks it up on its next sync
+                log.error("Failed to spill offline notification for user {}", userId, e);
+            }
+            return target;
+        });
+    }
+
+    /**
+     * Take the next notifications queued for a user, oldest first. An empty list
+     * means the queue is drained.
+     */
+    public List<ChatNotification> pollBatch(Long userId, int maxSize) {
+        UserQueue queue = findQueue(userId);
+        if (queue == null) {
+            return List.of();
+        }
+
+        List<ChatNotification> batch;
+        try {
+            batch = queue.pollBatch(maxSize);
+        } catch (IOException e) {
+            log.error("Failed to read offline queue of user {}", userId, e);
+            batch = List.of();
+        }
+
+        if (batch.isEmpty()) {
+            // Atomic with enqueue(), which offers inside compute()
+            queues.computeIfPresent(userId, (id, current) -> current == queue && queue.isEmpty() ? null : current);
+        }
+        return batch;
+    }
+
+    public boolean hasQueued(Long userId) {
+        UserQueue queue = findQueue(userId);
+        return queue != null && !queue.isEmpty();
+    }
+
+    @PreDestroy
+    void persist() {
+        queues.forEach((userId, queue) -> {
+            try {
+                queue.persist();
+            } catch (IOException e) {
+                log.error("Failed to persist offline queue of user {}", userId, e);
+            }
+        });
+    }
+
+    private UserQueue findQueue(Long userId) {
+        UserQueue queue = queues.get(userId);
+        if (queue == null && Files.exists(spillFile(userId))) {
+            // Left on disk by a previous run
+            queue = queues.computeIfAbsent(userId, this::openQueue);
+        }
+        return queue;
+    }
+
+    private UserQueue openQueue(Long userId) {
+        return new UserQueue(spillFile(userId));
+    }
+
+    private Path spillFile(Long userId) {
+        return spillDir.resolve(userId + SPILL_FILE_SUFFIX);
+    }
+
+    /**
+     * Memory holds the oldest notifications, the spill file the newer ones. As long
+     * as the file has unread entries new notifications are appended there too, so
+     * delivery order is preserved. Batches are read from the file directly, and the
+     * offset of the first unread entry is stored next to it, so a restart resumes
+     * where the previous run stopped.
+     */
+    private class UserQueue {
+        private final Path spillFile;
+        private final Path offsetFile;
+        private final Deque<ChatNotification> memory = new ArrayDeque<>();
+        private long spilled;
+        private long readPosition;
+
+        UserQueue(Path spillFile) {
+            this.spillFile = spillFile;
+            this.offsetFile = spillFile.resolveSibling(spillFile.getFileName() + OFFSET_FILE_SUFFIX);
+            // Pick up what a previous run left on disk
+            if (Files.exists(spillFile)) {
+                try {
+                    if (Files.exists(offsetFile)) {
+                        readPosition = Long.parseLong(Files.readString(offsetFile).trim());
+                    }
+                    try (InputStream in = new BufferedInputStream(Files.newInputStream(spillFile))) {
+                        in.skipNBytes(readPosition);
+                        int b;
+                        while ((b = in.read()) != -1) {
+                            if (b == '\n') {
+                                spilled++;
+                            }
+                        }
+                    }
+                } catch (IOException | NumberFormatException e) {
+                    log.error("Could not read spill file {}", spillFile, e);
+                }
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return memory.isEmpty() && spilled == 0;
+        }
+
+        synchronized void offer(ChatNotification notification) throws IOException {
+            if (spilled == 0 && memory.size() < memoryCapacity) {
+                memory.addLast(notification);
+                return;
+            }
+            if (spilled >= maxSpilled) {
+                log.warn("Offline queue of {} is full, dropping notification {}", spillFile.getFileName(), notification.getId());
+                return;
+            }
+
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(spillFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+                out.write(objectMapper.writeValueAsBytes(notification));
+                out.write('\n');
+            }
+            spilled++;
+        }
+
+        synchronized List<ChatNotification> pollBatch(int size) throws IOException {
+            List<ChatNotification> batch = new ArrayList<>(size);
+            while (batch.size() < size && !memory.isEmpty()) {
+                batch.add(memory.pollFirst());
+            }
+            if (batch.isEmpty() && spilled > 0) {
+                readFromDisk(batch, size);
+            }
+            return batch;
+        }
+
+        private void readFromDisk(List<ChatNotification> batch, int size) throws IOException {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(spillFile))) {
+                in.skipNBytes(readPosition);
+                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                int b;
+                while (batch.size() < size && (b = in.read()) != -1) {
+                    readPosition++;
+                    if (b != '\n') {
+                        line.write(b);
+                        continue;
+                    }
+                    batch.add(objectMapper.readValue(line.toByteArray(), ChatNotification.class));
+                    line.reset();
+                    spilled--;
+                }
+            }
+
+            if (spilled == 0) {
+                Files.deleteIfExists(spillFile);
+                Files.deleteIfExists(offsetFile);
+                readPosition = 0;
+            } else {
+                Files.writeString(offsetFile, Long.toString(readPosition));
+            }
+        }
+
+        /**
+         * Move the notifications held in memory to the front of the spill file
+         */
+        synchronized void persist() throws IOException {
+            if (memory.isEmpty()) {
+                return;
+            }
+
+            Path rewritten = spillFile.resolveSibling(spillFile.getFileName() + ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(rewritten))) {
+                for (ChatNotification notification : memory) {
+                    out.write(objectMapper.writeValueAsBytes(notification));
+                    out.write('\n');
+                }
+                if (spilled > 0) {
+                    try (InputStream in = Files.newInputStream(spillFile)) {
+                        in.skipNBytes(readPosition);
+                        in.transferTo(out);
+                    }
+                }
+            }
+            Files.move(rewritten, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(offsetFile);
+
+            spilled += memory.size();
+            memory.clear();
+            readPosition = 0;
+        }
+    }
+}
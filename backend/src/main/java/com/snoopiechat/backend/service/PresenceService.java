@@ -0,0 +1,146 @@
+package com.snoopiechat.backend.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.snoopiechat.backend.dto.ContactDTO;
+import com.snoopiechat.backend.dto.PresenceUpdate;
+import com.snoopiechat.backend.repository.ContactRepo;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Online state of users: online while any of their sessions is connected. Changes are
+ * collected and published every chat.presence.flush-ms to the connected mutual
+ * contacts of the changed user, so a reconnecting client only causes a single
+ * update (or none, if it came back before the flush).
+ *
+ * Presence is only shown between mutual contacts where neither side blocked the
+ * other: someone a user blocked or removed doesn't see them come online.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PresenceService {
+    public static final String DESTINATION = "/queue/presence";
+
+    private final UserSessionRegistry sessionRegistry;
+    private final ContactRepo contactRepo;
+
+    @Value("${chat.presence.flush-ms:1000}")
+    private long flushMs;
+
+    // Recipients of a single change, the others see it with their next contact list
+    @Value("${chat.presence.max-fanout:500}")
+    private int maxFanout;
+
+    // State last published for each user with a pending change
+    private final Map<Long, Boolean> changed = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        executorService.scheduleWithFixedDelay(this::flush, flushMs, flushMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called when the first session of a user connected
+     */
+    public void userConnected(Long userId) {
+        changed.putIfAbsent(userId, false);
+    }
+
+    /**
+     * Called when the last session of a user disconnected
+     */
+    public void userDisconnected(Long userId) {
+        changed.putIfAbsent(userId, true);
+    }
+
+    /**
+     * @return true if {@code contactId} is online and {@code viewerId} may see it
+     */
+    public boolean isOnline(Long viewerId, Long contactId) {
+        return !onlineAmong(viewerId, List.of(contactId)).isEmpty();
+    }
+
+    /**
+     * Bulk lookup for lists of users, one query for the ones connected
+     *
+     * @return the ids of {@code userIds} that are online and visible to {@code viewerId}
+     */
+    public Set<Long> onlineAmong(Long viewerId, Collection<Long> userIds) {
+        Set<Long> connected = new HashSet<>();
+        for (Long userId : userIds) {
+            if (sessionRegistry.isConnected(userId)) {
+                connected.add(userId);
+            }
+        }
+        return connected.isEmpty() ? connected : new HashSet<>(contactRepo.findMutualContactIds(viewerId, connected));
+    }
+
+    /**
+     * Fill in the online flag of {@code viewerId}'s contact list entries
+     */
+    public <T extends Collection<ContactDTO>> T annotate(Long viewerId, T contacts) {
+        Set<Long> online = onlineAmong(viewerId, contacts.stream().map(ContactDTO::getId).toList());
+        for (ContactDTO contact : contacts) {
+            contact.setOnline(online.contains(contact.getId()));
+        }
+        return contacts;
+    }
+
+    private void flush() {
+        for (Long userId : List.copyOf(changed.keySet())) {
+            boolean published = changed.remove(userId);
+            boolean online = sessionRegistry.isConnected(userId);
+            if (online == published) {
+                continue; // back to the state the contacts already know
+            }
+            try {
+                publish(userId, online);
+            } catch (Exception e) {
+                log.error("Failed to publish presence of user {}", userId, e);
+            }
+        }
+    }
+
+    private void publish(Long userId, boolean online) {
+        List<Long> watchers = new ArrayList<>();
+        for (Long watcherId : contactRepo.findMutualWatcherIds(userId)) {
+            if (sessionRegistry.isConnected(watcherId)) {
+                if (watchers.size() == maxFanout) {
+                    log.debug("Presence of user {} capped at {} recipients", userId, maxFanout);
+                    break;
+                }
+                watchers.add(watcherId);
+            }
+        }
+
+        PresenceUpdate update = new PresenceUpdate(userId, online);
+        for (Long watcherId : watchers) {
+            sessionRegistry.send(watcherId, DESTINATION, update);
+        }
+    }
+
+    @PreDestroy
+    private void shutDown() {
+        executorService.shutdownNow();
+    }
+}
@@ -16,6 +16,7 @@ import com.snoopiechat.backend.dto.client.UserClientDto;
 import com.snoopiechat.backend.dto.x3dh.X3dhIdentityKeyRequest;
 import com.snoopiechat.backend.model.Users;
 import com.snoopiechat.backend.repository.UserRepo;
+import com.snoopiechat.backend.storage.SqliteWriter;
 
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
@@ -35,9 +36,12 @@ public class UserService {
     @Autowired
     private UserRepo userRepo;
 
+    @Autowired
+    private SqliteWriter sqliteWriter;
+
     private PasswordEncoder encoder = Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8();
 
-    public Users register(UserRegisterRequest request) {
+    public UserClientDto register(UserRegisterRequest request) {
         Users user = request.getUserData();
 
         if(userRepo.existsByEmail(user.getEmail()))
@@ -58,9 +62,8 @@ public class UserService {
                     "Failed to register with PKI service: " + e.getMessage());
         }
 
-        userRepo.save(user);
-        user.setPassword(null);
-        return user;
+        sqliteWriter.execute(status -> userRepo.save(user));
+        return new UserClientDto(user.getId(), user.getUsername(), user.getEmail());
     }
 
     public String verify(String email, String password){
@@ -93,10 +96,7 @@ public class UserService {
         if (token == null || email == null)
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid or Expired Token");
 
-        Users user = userRepo.findByEmail(email);
-        return new UserClientDto(
-                user.getId(),
-                user.getUsername(),
-                user.getEmail());
+        return userRepo.findClientDtoByEmail(email)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid or Expired Token"));
     }
 }
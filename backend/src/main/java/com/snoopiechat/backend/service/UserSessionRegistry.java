@@ -0,0 +1,186 @@
+package com.snoopiechat.backend.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+
+import com.snoopiechat.backend.cluster.ClusterBus;
+import com.snoopiechat.backend.cluster.ClusterUserRegistry;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * WebSocket sessions of every connected user, one per device. Connects and
+ * disconnects of the same user are serialized on one of chat.sessions.lock-stripes
+ * locks, so the first and last session of a user are detected reliably while
+ * different users don't contend.
+ *
+ * Sessions are not tied to a principal named after the user id, so user
+ * destinations are resolved here: {@link #send} addresses every session of the
+ * user directly, clients subscribe to /user/queue/...
+ *
+ * A session may have asked for another content type than JSON, its messages
+ * are converted to that.
+ *
+ * Users connected to other nodes of the cluster (see ClusterUserRegistry) count
+ * as connected too; {@link #send} forwards their messages to those nodes.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserSessionRegistry {
+    private static final String SEND_TOPIC = "sessions.send";
+
+    public record UserMessage(Long userId, String destination, Object payload) {
+    }
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ClusterBus clusterBus;
+    private final ClusterUserRegistry clusterUsers;
+
+    @Value("${chat.sessions.lock-stripes:64}")
+    private int lockStripes;
+
+    private final Map<Long, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    private final Map<String, Long> userBySession = new ConcurrentHashMap<>();
+    // Only sessions that don't use JSON
+    private final Map<String, MimeType> contentTypes = new ConcurrentHashMap<>();
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private Object[] locks;
+
+    @PostConstruct
+    void init() {
+        locks = new Object[lockStripes];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+
+        // Divide jvm.memory.used deltas by these to see the cost of a connection
+        Gauge.builder("chat.sessions.active", sessionCount, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("chat.sessions.users", sessionsByUser, Map::size).register(meterRegistry);
+
+        clusterBus.subscribe(SEND_TOPIC, UserMessage.class,
+                (node, message) -> sendLocal(message.userId(), message.destination(), message.payload()));
+    }
+
+    /**
+     * @param contentType of the messages sent to the session, null for JSON
+     * @return true if this is the first session of the user
+     */
+    public boolean register(Long userId, String sessionId, MimeType contentType) {
+        synchronized (lockFor(userId)) {
+            if (userBySession.putIfAbsent(sessionId, userId) != null) {
+                return false;
+            }
+            if (contentType != null) {
+                contentTypes.put(sessionId, contentType);
+            }
+            sessionCount.incrementAndGet();
+            Set<String> sessions = sessionsByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet());
+            sessions.add(sessionId);
+            if (sessions.size() > 1) {
+                return false;
+            }
+            clusterUsers.localUserConnected(userId);
+            return true;
+        }
+    }
+
+    /**
+     * @return the user of the session if it was the user's last one, null otherwise
+     */
+    public Long unregister(String sessionId) {
+        Long userId = userBySession.get(sessionId);
+        if (userId == null) {
+            return null;
+        }
+
+        synchronized (lockFor(userId)) {
+            if (!userBySession.remove(sessionId, userId)) {
+                return null;
+            }
+            contentTypes.remove(sessionId);
+            sessionCount.decrementAndGet();
+            Set<String> sessions = sessionsByUser.get(userId);
+            sessions.remove(sessionId);
+            if (!sessions.isEmpty()) {
+                return null;
+            }
+            sessionsByUser.remove(userId);
+            clusterUsers.localUserDisconnected(userId);
+            return userId;
+        }
+    }
+
+    public Long userOf(String sessionId) {
+        return userBySession.get(sessionId);
+    }
+
+    /**
+     * @return true if the user has a session on any node
+     */
+    public boolean isConnected(Long userId) {
+        return sessionsByUser.containsKey(userId) || clusterUsers.isConnectedElsewhere(userId);
+    }
+
+    public boolean isConnectedLocally(Long userId) {
+        return sessionsByUser.containsKey(userId);
+    }
+
+    public Set<String> sessionsOf(Long userId) {
+        Set<String> sessions = sessionsByUser.get(userId);
+        return sessions == null ? Set.of() : Set.copyOf(sessions);
+    }
+
+    /**
+     * Send {@code payload} to /user/{@code destination} of every session of the
+     * user, on this and on other nodes
+     *
+     * @return number of local sessions and other nodes it was sent to
+     */
+    public int send(Long userId, String destination, Object payload) {
+        Set<String> nodes = clusterUsers.nodesOf(userId);
+        for (String node : nodes) {
+            clusterBus.send(node, SEND_TOPIC, new UserMessage(userId, destination, payload));
+        }
+        return sendLocal(userId, destination, payload) + nodes.size();
+    }
+
+    private int sendLocal(Long userId, String destination, Object payload) {
+        Set<String> sessions = sessionsByUser.get(userId);
+        if (sessions == null) {
+            return 0;
+        }
+
+        int sent = 0;
+        for (String sessionId : sessions) {
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            headers.setSessionId(sessionId);
+            MimeType contentType = contentTypes.get(sessionId);
+            if (contentType != null) {
+                headers.setContentType(contentType);
+            }
+            headers.setLeaveMutable(true);
+            messagingTemplate.convertAndSendToUser(sessionId, destination, payload, headers.getMessageHeaders());
+            sent++;
+        }
+        return sent;
+    }
+
+    private Object lockFor(Long userId) {
+        return locks[Math.floorMod(userId.hashCode(), locks.length)];
+    }
+}
@@ -0,0 +1,289 @@
+package com.snoopiechat.backend.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.snoopiechat.backend.model.ChatMessage;
+import com.snoopiechat.backend.util.LruCache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cold tier of the chat history: one directory per chat holding immutable
+ * {@link MessageSegment} files. Only the segment list of a chat and its newest
+ * key are kept in memory, segments themselves are opened on demand and kept
+ * in an LRU that closes the ones it evicts.
+ *
+ * Segments are only deleted once all their messages expired, so readers pass
+ * the retention cutoff of the chat and expired messages are skipped.
+ */
+@Component
+@Slf4j
+public class ColdMessageStore {
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    @Value("${chat.cold-storage.dir:cold-storage}")
+    private String storageDir;
+
+    @Value("${chat.cold-storage.block-size:64}")
+    private int blockSize;
+
+    @Value("${chat.cold-storage.open-segments:256}")
+    private int maxOpenSegments;
+
+    private Path root;
+    private LruCache<Path, MessageSegment> openSegments;
+
+    // chatId -> segment files, oldest first
+    private final Map<String, ChatSegments> chatSegments = new ConcurrentHashMap<>();
+
+    private record ChatSegments(List<Path> files, Optional<MessageKey> lastKey) {}
+
+    private record BlockRef(MessageSegment segment, MessageSegment.Block block) {}
+
+    @PostConstruct
+    void init() throws IOException {
+        root = Paths.get(storageDir);
+        Files.createDirectories(root);
+        openSegments = new LruCache<>(maxOpenSegments, (file, segment) -> close(segment));
+    }
+
+    /**
+     * Write messages of a chat, sorted by {@link MessageKey#ORDER}, as a new segment.
+     * The file only becomes visible once it is complete and synced.
+     */
+    public void append(String chatId, List<ChatMessage> messages) throws IOException {
+        Path dir = Files.createDirectories(root.resolve(chatId));
+        // Named after the newest message id, so names sort in tiering order
+        Path target = dir.resolve(String.format("%020d%s", messages.get(messages.size() - 1).getId(), SEGMENT_SUFFIX));
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+
+        Files.deleteIfExists(temp);
+        MessageSegment.write(temp, messages, blockSize);
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        chatSegments.remove(chatId);
+    }
+
+    /**
+     * Newest position stored in the cold tier of a chat
+     */
+    public Optional<MessageKey> lastKey(String chatId) {
+        return chatSegments(chatId).lastKey();
+    }
+
+    /**
+     * Up to {@code limit} messages strictly before {@code cursor} (all when null), newest first
+     *
+     * @param expiredBefore messages older than this are skipped, null keeps all
+     */
+    public List<ChatMessage> pageBefore(String chatId, MessageKey cursor, int limit, LocalDateTime expiredBefore) {
+        List<BlockRef> candidates = new ArrayList<>();
+        for (MessageSegment segment : segments(chatId)) {
+            for (MessageSegment.Block block : segment.blocks()) {
+                if ((cursor == null || block.first().compareTo(cursor) < 0) && !isExpired(block, expiredBefore)) {
+                    candidates.add(new BlockRef(segment, block));
+                }
+            }
+        }
+        // Blocks with the newest last key first; stop once no remaining block can beat the page
+        candidates.sort(Comparator.comparing((BlockRef ref) -> ref.block().last()).reversed());
+
+        List<ChatMessage> page = new ArrayList<>();
+        for (BlockRef ref : candidates) {
+            if (page.size() >= limit && ref.block().last().compareTo(MessageKey.of(page.get(limit - 1))) < 0) {
+                break;
+            }
+            for (ChatMessage message : ref.segment().readBlock(ref.block())) {
+                if ((cursor == null || MessageKey.of(message).compareTo(cursor) < 0) && !isExpired(message, expiredBefore)) {
+                    page.add(message);
+                }
+            }
+            page.sort(MessageKey.ORDER.reversed());
+        }
+        return page.size() > limit ? new ArrayList<>(page.subList(0, limit)) : page;
+    }
+
+    /**
+     * Up to {@code limit} messages strictly after {@code cursor}, oldest first
+     *
+     * @param expiredBefore messages older than this are skipped, null keeps all
+     */
+    public List<ChatMessage> pageAfter(String chatId, MessageKey cursor, int limit, LocalDateTime expiredBefore) {
+        List<BlockRef> candidates = new ArrayList<>();
+        for (MessageSegment segment : segments(chatId)) {
+            for (MessageSegment.Block block : segment.blocks()) {
+                if (block.last().compareTo(cursor) > 0 && !isExpired(block, expiredBefore)) {
+                    candidates.add(new BlockRef(segment, block));
+                }
+            }
+        }
+        candidates.sort(Comparator.comparing((BlockRef ref) -> ref.block().first()));
+
+        List<ChatMessage> page = new ArrayList<>();
+        for (BlockRef ref : candidates) {
+            if (page.size() >= limit && ref.block().first().compareTo(MessageKey.of(page.get(limit - 1))) > 0) {
+                break;
+            }
+            for (ChatMessage message : ref.segment().readBlock(ref.block())) {
+                if (MessageKey.of(message).compareTo(cursor) > 0 && !isExpired(message, expiredBefore)) {
+                    page.add(message);
+                }
+            }
+            page.sort(MessageKey.ORDER);
+        }
+        return page.size() > limit ? new ArrayList<>(page.subList(0, limit)) : page;
+    }
+
+    /**
+     * @param expiredBefore a message older than this is not found, null finds all
+     */
+    public Optional<ChatMessage> findById(String chatId, long id, LocalDateTime expiredBefore) {
+        for (MessageSegment segment : segments(chatId)) {
+            for (MessageSegment.Block block : segment.blocks()) {
+                if (block.minId() <= id && id <= block.maxId() && !isExpired(block, expiredBefore)) {
+                    Optional<ChatMessage> found = segment.readBlock(block).stream()
+                        .filter(message -> message.getId() == id && !isExpired(message, expiredBefore))
+                        .findFirst();
+                    if (found.isPresent()) {
+                        return found;
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Delete the segments of a chat whose messages are all older than {@code cutoff}.
+     * Segments are immutable, so partly expired ones stay until they expire
+     * entirely; readers skip their expired messages meanwhile.
+     *
+     * @return number of messages removed
+     */
+    public long dropOlderThan(String chatId, LocalDateTime cutoff) throws IOException {
+        long dropped = 0;
+        for (Path file : chatSegments(chatId).files()) {
+            MessageSegment segment = segment(file);
+            if (segment.last().timestamp().isBefore(cutoff)) {
+                dropped += segment.messageCount();
+                MessageSegment open = openSegments.remove(file);
+                if (open != null) {
+                    close(open);
+                }
+                Files.deleteIfExists(file);
+                chatSegments.remove(chatId);
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * {@link #dropOlderThan(String, LocalDateTime)} for every chat
+     */
+    public long dropAllOlderThan(LocalDateTime cutoff) throws IOException {
+        long dropped = 0;
+        for (String chatId : chatIds()) {
+            dropped += dropOlderThan(chatId, cutoff);
+        }
+        return dropped;
+    }
+
+    private Set<String> chatIds() throws IOException {
+        Set<String> chatIds = new HashSet<>();
+        try (Stream<Path> dirs = Files.list(root)) {
+            dirs.filter(Files::isDirectory).forEach(dir -> chatIds.add(dir.getFileName().toString()));
+        }
+        return chatIds;
+    }
+
+    private static boolean isExpired(MessageSegment.Block block, LocalDateTime expiredBefore) {
+        return expiredBefore != null && block.last().timestamp().isBefore(expiredBefore);
+    }
+
+    private static boolean isExpired(ChatMessage message, LocalDateTime expiredBefore) {
+        return expiredBefore != null && message.getTimestamp().isBefore(expiredBefore);
+    }
+
+    private List<MessageSegment> segments(String chatId) {
+        List<MessageSegment> segments = new ArrayList<>();
+        for (Path file : chatSegments(chatId).files()) {
+            try {
+                segments.add(segment(file));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open segment " + file, e);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Segment list of a chat together with its newest key, loaded once and
+     * dropped whenever a segment is added or deleted
+     */
+    private ChatSegments chatSegments(String chatId) {
+        return chatSegments.computeIfAbsent(chatId, id -> {
+            Path dir = root.resolve(id);
+            if (!Files.isDirectory(dir)) {
+                return new ChatSegments(List.of(), Optional.empty());
+            }
+            try (Stream<Path> files = Files.list(dir)) {
+                List<Path> sorted = files
+                    .filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+
+                MessageKey lastKey = null;
+                for (Path file : sorted) {
+                    MessageKey last = segment(file).last();
+                    if (lastKey == null || last.compareTo(lastKey) > 0) {
+                        lastKey = last;
+                    }
+                }
+                return new ChatSegments(sorted, Optional.ofNullable(lastKey));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private MessageSegment segment(Path file) throws IOException {
+        MessageSegment segment = openSegments.get(file);
+        if (segment == null) {
+            MessageSegment opened = MessageSegment.open(file.getParent().getFileName().toString(), file);
+            segment = openSegments.putIfAbsent(file, opened);
+            if (segment == null) {
+                segment = opened;
+            } else {
+                // Opened concurrently by another reader
+                close(opened);
+            }
+        }
+        return segment;
+    }
+
+    private static void close(MessageSegment segment) {
+        try {
+            segment.close();
+        } catch (IOException e) {
+            log.warn("Failed to close segment", e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.snoopiechat.backend.storage;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+import com.snoopiechat.backend.model.ChatMessage;
+
+/**
+ * Position of a message in its chat history, the (timestamp, id) order used by
+ * history pagination in both the database and the segment files.
+ */
+public record MessageKey(LocalDateTime timestamp, long id) implements Comparable<MessageKey> {
+    public static final Comparator<ChatMessage> ORDER = Comparator
+        .comparing(ChatMessage::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparing(ChatMessage::getId);
+
+    private static final Comparator<MessageKey> KEY_ORDER = Comparator
+        .comparing(MessageKey::timestamp, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparingLong(MessageKey::id);
+
+    public static MessageKey of(ChatMessage message) {
+        return new MessageKey(message.getTimestamp(), message.getId());
+    }
+
+    @Override
+    public int compareTo(MessageKey other) {
+        return KEY_ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,353 @@
+package com.snoopiechat.backend.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.snoopiechat.backend.model.ChatMessage;
+
+/**
+ * Immutable file with old messages of one chat, ordered by {@link MessageKey}.
+ *
+ * Layout: deflated blocks of up to blockSize messages, then a sparse index with
+ * one entry per block, then a fixed size footer pointing at the index. Readers
+ * keep the index in memory and only read and inflate the blocks a page
+ * actually touches, with positional reads on a channel that {@link #close()}
+ * releases. Java 21 has no supported way to unmap a mapped file, so segments
+ * aren't mapped.
+ */
+public final class MessageSegment implements Closeable {
+    private static final int MAGIC = 0x534e4353; // "SNCS"
+    private static final int VERSION = 1;
+    private static final int FOOTER_SIZE = Long.BYTES + Integer.BYTES * 3;
+    private static final int TIMESTAMP_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int INDEX_ENTRY_SIZE = TIMESTAMP_SIZE * 2 + Long.BYTES * 5 + Integer.BYTES * 3;
+
+    /**
+     * Index entry of one block. Keys bound the block in pagination order, the id
+     * range serves cursor lookups by message id.
+     */
+    public record Block(
+        MessageKey first,
+        MessageKey last,
+        long minId,
+        long maxId,
+        long offset,
+        int compressedLength,
+        int length,
+        int count
+    ) {}
+
+    private final String chatId;
+    private final Path path;
+    private final List<Block> blocks;
+    // Reads share the channel, close() waits for them
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+
+    private MessageSegment(String chatId, Path path, FileChannel channel, List<Block> blocks) {
+        this.chatId = chatId;
+        this.path = path;
+        this.channel = channel;
+        this.blocks = blocks;
+    }
+
+    public List<Block> blocks() {
+        return blocks;
+    }
+
+    public MessageKey first() {
+        return blocks.get(0).first();
+    }
+
+    public MessageKey last() {
+        return blocks.get(blocks.size() - 1).last();
+    }
+
+    public int messageCount() {
+        return blocks.stream().mapToInt(Block::count).sum();
+    }
+
+    /**
+     * Write messages, already sorted by {@link MessageKey#ORDER}, to a new segment file
+     */
+    public static void write(Path path, List<ChatMessage> messages, int blockSize) throws IOException {
+        if (messages.isEmpty()) {
+            throw new IllegalArgumentException("A segment needs at least one message");
+        }
+
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            List<Block> index = new ArrayList<>();
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                long offset = writeFully(channel, ByteBuffer.allocate(Integer.BYTES * 2).putInt(MAGIC).putInt(VERSION).flip(), 0);
+
+                for (int from = 0; from < messages.size(); from += blockSize) {
+                    List<ChatMessage> chunk = messages.subList(from, Math.min(from + blockSize, messages.size()));
+                    byte[] raw = encode(chunk);
+                    byte[] compressed = deflate(deflater, raw);
+
+                    index.add(new Block(
+                        MessageKey.of(chunk.get(0)),
+                        MessageKey.of(chunk.get(chunk.size() - 1)),
+                        chunk.stream().mapToLong(ChatMessage::getId).min().getAsLong(),
+                        chunk.stream().mapToLong(ChatMessage::getId).max().getAsLong(),
+                        offset,
+                        compressed.length,
+                        raw.length,
+                        chunk.size()
+                    ));
+                    offset = writeFully(channel, ByteBuffer.wrap(compressed), offset);
+                }
+
+                long indexOffset = offset;
+                offset = writeFully(channel, ByteBuffer.wrap(encodeIndex(index)), offset);
+                writeFully(channel, ByteBuffer.allocate(FOOTER_SIZE)
+                    .putLong(indexOffset).putInt(index.size()).putInt(VERSION).putInt(MAGIC).flip(), offset);
+            } finally {
+                deflater.end();
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Open a segment file and load its index
+     */
+    public static MessageSegment open(String chatId, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < FOOTER_SIZE) {
+                throw new IOException("Truncated segment " + path);
+            }
+
+            ByteBuffer footer = readFully(channel, ByteBuffer.allocate(FOOTER_SIZE), size - FOOTER_SIZE).flip();
+            long indexOffset = footer.getLong();
+            int blockCount = footer.getInt();
+            int version = footer.getInt();
+            if (footer.getInt() != MAGIC || version != VERSION || indexOffset < 0 || indexOffset > size - FOOTER_SIZE) {
+                throw new IOException("Not a message segment " + path);
+            }
+
+            ByteBuffer index = readFully(channel,
+                ByteBuffer.allocate((int) (size - FOOTER_SIZE - indexOffset)), indexOffset).flip();
+            List<Block> blocks = new ArrayList<>(blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                blocks.add(new Block(
+                    new MessageKey(readTimestamp(index), index.getLong()),
+                    new MessageKey(readTimestamp(index), index.getLong()),
+                    index.getLong(),
+                    index.getLong(),
+                    index.getLong(),
+                    index.getInt(),
+                    index.getInt(),
+                    index.getInt()
+                ));
+            }
+            return new MessageSegment(chatId, path, channel, Collections.unmodifiableList(blocks));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read, inflate and decode one block. A segment deleted meanwhile reads as
+     * empty, it only held expired messages.
+     */
+    public List<ChatMessage> readBlock(Block block) {
+        byte[] compressed = new byte[block.compressedLength()];
+        try {
+            read(ByteBuffer.wrap(compressed), block.offset());
+        } catch (NoSuchFileException e) {
+            return List.of();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read segment " + path, e);
+        }
+
+        byte[] raw = new byte[block.length()];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                read += inflater.inflate(raw, read, raw.length - read);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt block in segment of chat " + chatId, e);
+        } finally {
+            inflater.end();
+        }
+
+        try {
+            return decode(raw, block.count());
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt block in segment of chat " + chatId, e);
+        }
+    }
+
+    /**
+     * Release the file. Blocks can still be read afterwards, each read then opens
+     * the file on its own.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void read(ByteBuffer target, long position) throws IOException {
+        lock.readLock().lock();
+        try {
+            if (channel != null) {
+                readFully(channel, target, position);
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Closed while a reader still held the segment
+        try (FileChannel once = FileChannel.open(path, StandardOpenOption.READ)) {
+            readFully(once, target, position);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position);
+            if (read < 0) {
+                throw new EOFException("Truncated segment");
+            }
+            position += read;
+        }
+        return target;
+    }
+
+    private static byte[] encodeIndex(List<Block> index) {
+        ByteBuffer out = ByteBuffer.allocate(index.size() * INDEX_ENTRY_SIZE);
+        for (Block block : index) {
+            writeTimestamp(out, block.first().timestamp());
+            out.putLong(block.first().id());
+            writeTimestamp(out, block.last().timestamp());
+            out.putLong(block.last().id());
+            out.putLong(block.minId()).putLong(block.maxId()).putLong(block.offset());
+            out.putInt(block.compressedLength()).putInt(block.length()).putInt(block.count());
+        }
+        return out.array();
+    }
+
+    private static byte[] encode(List<ChatMessage> messages) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (ChatMessage message : messages) {
+                out.writeLong(message.getId());
+                out.writeLong(message.getSeq() != null ? message.getSeq() : -1);
+                out.writeLong(message.getSenderId());
+                out.writeLong(message.getRecipientId());
+                out.writeLong(message.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(message.getTimestamp().getNano());
+                writeBytes(out, message.getContent());
+                writeBytes(out, message.getClientMessageId() != null
+                    ? message.getClientMessageId().getBytes(StandardCharsets.UTF_8) : null);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<ChatMessage> decode(byte[] raw, int count) throws IOException {
+        List<ChatMessage> messages = new ArrayList<>(count);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw))) {
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                long seq = in.readLong();
+                long senderId = in.readLong();
+                long recipientId = in.readLong();
+                LocalDateTime timestamp = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                byte[] content = readBytes(in);
+                byte[] clientMessageId = readBytes(in);
+
+                messages.add(ChatMessage.builder()
+                    .id(id)
+                    .chatId(chatId)
+                    .seq(seq >= 0 ? seq : null)
+                    .senderId(senderId)
+                    .recipientId(recipientId)
+                    .timestamp(timestamp)
+                    .content(content)
+                    .clientMessageId(clientMessageId != null ? new String(clientMessageId, StandardCharsets.UTF_8) : null)
+                    .build());
+            }
+        }
+        return messages;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value != null ? value.length : -1);
+        if (value != null) {
+            out.write(value);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        return length >= 0 ? in.readNBytes(length) : null;
+    }
+
+    private static void writeTimestamp(ByteBuffer out, LocalDateTime timestamp) {
+        out.putLong(timestamp.toEpochSecond(ZoneOffset.UTC)).putInt(timestamp.getNano());
+    }
+
+    private static LocalDateTime readTimestamp(ByteBuffer in) {
+        return LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        return out.toByteArray();
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+        return position;
+    }
+}
@@ -0,0 +1,78 @@
+package com.snoopiechat.backend.storage;
+
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Spreads message storage over chat.storage.shards SQLite files by hashing the
+ * chat id. Shard 0 is the main database; the other files only hold chat_message,
+ * chat_sequence and message_id_sequence rows. Statements run against the shard selected on the
+ * current thread (the routing happens in the data source), writes to a shard go
+ * through its own {@link SqliteWriter} thread.
+ *
+ * The shard of a chat depends on the shard count, so changing it requires moving
+ * the stored messages to their new shard first.
+ */
+@Component
+public class MessageShards {
+    private static final ThreadLocal<Integer> CURRENT = ThreadLocal.withInitial(() -> 0);
+
+    @Value("${chat.storage.shards:1}")
+    private int count;
+
+    @PostConstruct
+    void validate() {
+        if (count < 1) {
+            throw new IllegalStateException("chat.storage.shards must be at least 1");
+        }
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int shardOf(String chatId) {
+        // String.hashCode is specified, so a chat keeps its shard across restarts
+        return Math.floorMod(chatId.hashCode(), count);
+    }
+
+    /**
+     * Run {@code query} with statements routed to the shard of {@code chatId}
+     */
+    public <T> T read(String chatId, Supplier<T> query) {
+        return callOn(shardOf(chatId), query);
+    }
+
+    /**
+     * Shard the current thread's statements go to
+     */
+    public static int current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run {@code action} with statements routed to {@code shard}. A transaction
+     * keeps the connection it started with, so the shard can't change inside one.
+     */
+    public static <T> T callOn(int shard, Supplier<T> action) {
+        int previous = CURRENT.get();
+        if (previous == shard) {
+            return action.get();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cannot switch to shard " + shard + " inside a transaction on shard " + previous);
+        }
+
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.snoopiechat.backend.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Runs write transactions one after the other on a dedicated thread per shard
+ * (see {@link MessageShards}), so writers queue here instead of retrying on
+ * SQLITE_BUSY, and shards are written in parallel. Calls made from inside a
+ * transaction run inline: they already hold (or will take) the writer
+ * connection, and waiting for the writer thread from there would deadlock.
+ */
+@Component
+@RequiredArgsConstructor
+public class SqliteWriter {
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final MessageShards messageShards;
+
+    @Value("${chat.datasource.write-queue-capacity:10000}")
+    private int queueCapacity;
+
+    private final List<Shard> shards = new ArrayList<>();
+
+    private static final class Shard {
+        ThreadPoolExecutor executor;
+        volatile Thread thread;
+        Timer queueTimer;
+        Timer writeTimer;
+    }
+
+    @PostConstruct
+    void start() {
+        for (int i = 0; i < messageShards.count(); i++) {
+            Shard shard = new Shard();
+            String threadName = i == 0 ? "sqlite-writer" : "sqlite-writer-" + i;
+            shard.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    shard.thread = new Thread(runnable, threadName);
+                    shard.thread.setDaemon(true);
+                    return shard.thread;
+                },
+                // A full queue pushes back on the caller, which then competes for the writer connection
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+            String tag = Integer.toString(i);
+            Gauge.builder("sqlite.writer.queue", shard.executor, e -> e.getQueue().size())
+                .tag("shard", tag)
+                .register(meterRegistry);
+            shard.queueTimer = meterRegistry.timer("sqlite.writer.wait", "shard", tag);
+            shard.writeTimer = meterRegistry.timer("sqlite.writer.transaction", "shard", tag);
+            shards.add(shard);
+        }
+    }
+
+    /**
+     * Run {@code action} in a write transaction on the main database
+     */
+    public <T> T execute(TransactionCallback<T> action) {
+        return execute(0, action);
+    }
+
+    /**
+     * Run {@code action} in a write transaction on the writer thread of
+     * {@code shardIndex} and wait for it
+     */
+    public <T> T execute(int shardIndex, TransactionCallback<T> action) {
+        Shard shard = shards.get(shardIndex);
+        if (Thread.currentThread() == shard.thread || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return MessageShards.callOn(shardIndex, () -> transactionTemplate.execute(action));
+        }
+
+        long queued = System.nanoTime();
+        Future<T> result = shard.executor.submit(() -> {
+            shard.queueTimer.record(System.nanoTime() - queued, TimeUnit.NANOSECONDS);
+            return shard.writeTimer.record(
+                () -> MessageShards.callOn(shardIndex, () -> transactionTemplate.execute(action)));
+        });
+
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the writer", e);
+        }
+    }
+
+    @PreDestroy
+    void shutDown() {
+        shards.forEach(shard -> shard.executor.shutdown());
+    }
+}
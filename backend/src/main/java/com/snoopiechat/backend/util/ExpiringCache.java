@@ -0,0 +1,68 @@
+package com.snoopiechat.backend.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe cache whose entries expire a fixed time after insertion. Entries are
+ * kept in insertion order, so expired ones are always at the head and eviction
+ * only looks at as many entries as it removes. Holds at most maxSize entries,
+ * dropping the oldest first.
+ */
+public class ExpiringCache<K, V> {
+    private record Entry<V>(V value, long expiresAtNanos) {}
+
+    private final Map<K, Entry<V>> entries = new LinkedHashMap<>();
+    private final int maxSize;
+    private final long ttlNanos;
+
+    public ExpiringCache(int maxSize, long ttlMillis) {
+        if (maxSize <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("maxSize and ttlMillis must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtNanos() - System.nanoTime() <= 0) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public synchronized void put(K key, V value) {
+        long now = System.nanoTime();
+        evictExpired(now);
+
+        // Re-inserting moves the key to the tail, keeping the map ordered by expiry
+        entries.remove(key);
+        entries.put(key, new Entry<>(value, now + ttlNanos));
+
+        if (entries.size() > maxSize) {
+            Iterator<K> oldest = entries.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expiresAtNanos() - now > 0) {
+                return;
+            }
+            it.remove();
+        }
+    }
+}
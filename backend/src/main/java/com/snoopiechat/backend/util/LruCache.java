@@ -0,0 +1,71 @@
+package com.snoopiechat.backend.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Small thread-safe LRU cache. Once maxSize entries are stored, the least
+ * recently accessed entry is evicted on the next insert.
+ */
+public class LruCache<K, V> {
+    private final Map<K, V> entries;
+
+    public LruCache(int maxSize) {
+        this(maxSize, (key, value) -> { });
+    }
+
+    /**
+     * @param onEvict called with every entry evicted to make room, while the cache is locked
+     */
+    public LruCache(int maxSize, BiConsumer<K, V> onEvict) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                onEvict.accept(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    /**
+     * @return the value already stored for the key, null if {@code value} was stored
+     */
+    public synchronized V putIfAbsent(K key, V value) {
+        return entries.putIfAbsent(key, value);
+    }
+
+    /**
+     * @return the new value, null if the key wasn't present (or {@code update} removed it)
+     */
+    public synchronized V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> update) {
+        return entries.computeIfPresent(key, update);
+    }
+
+    public synchronized V remove(K key) {
+        return entries.remove(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+}
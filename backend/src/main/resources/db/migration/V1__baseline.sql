@@ -0,0 +1,73 @@
+-- Tables as Hibernate's schema update created them. IF NOT EXISTS lets databases
+-- created before migrations were introduced pass through (they are baselined at 0).
+
+CREATE TABLE IF NOT EXISTS users (
+    id integer,
+    created_at timestamp,
+    email varchar(255) not null unique,
+    password varchar(255),
+    updated_at timestamp,
+    username varchar(255) not null unique,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS contact (
+    id integer,
+    blocked boolean not null,
+    created_at timestamp,
+    updated_at timestamp,
+    contact_id bigint not null,
+    user_id bigint not null,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS friend_request (
+    id integer,
+    status varchar(255) not null check (status in ('PENDING','ACCEPTED','REJECTED')),
+    recipient_id bigint not null,
+    sender_id bigint not null,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS chat_room (
+    id integer,
+    chat_id varchar(255),
+    recipient_id bigint,
+    sender_id bigint,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS chat_message (
+    id integer,
+    chat_id varchar(255),
+    seq bigint,
+    sender_id bigint,
+    recipient_id bigint,
+    content_blob blob,
+    content varchar(255),
+    client_message_id varchar(255),
+    timestamp timestamp,
+    is_dummy boolean,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS chat_sequence (
+    chat_id varchar(255) not null,
+    last_seq bigint not null,
+    primary key (chat_id)
+);
+
+CREATE TABLE IF NOT EXISTS device_sync_state (
+    id integer,
+    chat_id varchar(255) not null,
+    device_id varchar(255) not null,
+    last_seq bigint not null,
+    user_id bigint not null,
+    primary key (id)
+);
+
+CREATE TABLE IF NOT EXISTS chat_retention_policy (
+    chat_id varchar(255) not null,
+    ttl_seconds bigint not null,
+    primary key (chat_id)
+);
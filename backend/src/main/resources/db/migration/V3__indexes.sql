@@ -0,0 +1,44 @@
+-- Index set designed around the repository queries. Unique constraints the SQLite
+-- dialect never created are added as unique indexes, after removing duplicates
+-- (the oldest row is kept, it is the one lookups already resolved to). Only rows
+-- that carry nothing the kept one doesn't are removed.
+
+-- chat_message: keyset pagination and latest message per chat walk (chat_id, timestamp, id)
+CREATE INDEX IF NOT EXISTS idx_chat_message_chat_ts_id ON chat_message (chat_id, timestamp, id);
+-- sync reads a chat from a sequence number on
+CREATE INDEX IF NOT EXISTS idx_chat_message_chat_seq ON chat_message (chat_id, seq);
+-- global retention sweep
+CREATE INDEX IF NOT EXISTS idx_chat_message_timestamp ON chat_message (timestamp);
+-- dedup of client resends (NULL client ids never conflict)
+CREATE UNIQUE INDEX IF NOT EXISTS uk_chat_message_sender_client_id ON chat_message (sender_id, client_message_id);
+
+-- chat_room: lookup by pair and target of INSERT OR IGNORE. A row only maps the pair
+-- to a chat id and lookups read the oldest row, so the others are never read; the
+-- messages are stored by chat id and stay.
+DELETE FROM chat_room WHERE id NOT IN (SELECT MIN(id) FROM chat_room GROUP BY sender_id, recipient_id);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_chat_room_sender_recipient ON chat_room (sender_id, recipient_id);
+
+-- device_sync_state: target of the high-water mark upsert
+CREATE UNIQUE INDEX IF NOT EXISTS uk_device_sync_state_user_device_chat ON device_sync_state (user_id, device_id, chat_id);
+
+-- contact: findByUser / findByUserAndContact use the unique index, findByContact its own.
+-- Blocking may have hit any of the duplicates, the kept row takes it over.
+UPDATE contact SET blocked = 1 WHERE blocked = 0 AND EXISTS (
+    SELECT 1 FROM contact d WHERE d.user_id = contact.user_id AND d.contact_id = contact.contact_id AND d.blocked);
+DELETE FROM contact WHERE id NOT IN (SELECT MIN(id) FROM contact GROUP BY user_id, contact_id);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_contact_user_contact ON contact (user_id, contact_id);
+CREATE INDEX IF NOT EXISTS idx_contact_contact ON contact (contact_id);
+
+-- friend_request: only one pending request per pair. Answered requests stay as history,
+-- so a pair that was accepted and removed again can send a new request. A second
+-- pending row of a pair only repeats the first one (sent in the same instant).
+DELETE FROM friend_request WHERE status = 'PENDING' AND id NOT IN (
+    SELECT MIN(id) FROM friend_request WHERE status = 'PENDING' GROUP BY sender_id, recipient_id);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_friend_request_pending ON friend_request (sender_id, recipient_id)
+    WHERE status = 'PENDING';
+-- The partial index can't serve lookups with a bound status
+CREATE INDEX IF NOT EXISTS idx_friend_request_sender_recipient ON friend_request (sender_id, recipient_id);
+-- pending requests of a recipient
+CREATE INDEX IF NOT EXISTS idx_friend_request_recipient_status ON friend_request (recipient_id, status);
+
+-- users: username and email lookups use the automatic indexes of their UNIQUE columns
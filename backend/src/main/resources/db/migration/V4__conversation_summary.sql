@@ -0,0 +1,39 @@
+-- Conversation list read model: one row per user and peer, kept up to date as
+-- messages are stored and read, so the contact list needs no chat_message query.
+CREATE TABLE IF NOT EXISTS conversation_summary (
+    id integer,
+    user_id bigint not null,
+    peer_id bigint not null,
+    chat_id varchar(255) not null,
+    last_message_id bigint,
+    last_seq bigint not null,
+    read_seq bigint not null,
+    last_message blob,
+    last_timestamp timestamp,
+    primary key (id)
+);
+
+-- Lookup of a user's list, and target of the upserts
+CREATE UNIQUE INDEX IF NOT EXISTS uk_conversation_summary_user_peer ON conversation_summary (user_id, peer_id);
+
+-- Existing conversations start out read. Messages without a sequence number are
+-- numbered after the current counter on startup, so the marks start where that
+-- numbering will end. Messages still waiting for the binary content conversion
+-- get their preview with the next message.
+INSERT OR IGNORE INTO conversation_summary
+    (user_id, peer_id, chat_id, last_message_id, last_seq, read_seq, last_message, last_timestamp)
+SELECT r.sender_id, r.recipient_id, r.chat_id, m.id, s.seq, s.seq, m.content_blob, m.timestamp
+FROM chat_room r
+JOIN (
+    SELECT c.chat_id,
+        COALESCE((SELECT last_seq FROM chat_sequence WHERE chat_id = c.chat_id), 0)
+            + (SELECT COUNT(*) FROM chat_message WHERE chat_id = c.chat_id AND seq IS NULL) AS seq
+    FROM (SELECT DISTINCT chat_id FROM chat_room) c
+) s ON s.chat_id = r.chat_id
+JOIN chat_message m ON m.id = (
+    SELECT id FROM chat_message
+    WHERE chat_id = r.chat_id AND (is_dummy IS NULL OR is_dummy = 0)
+    ORDER BY timestamp DESC, id DESC
+    LIMIT 1
+)
+WHERE r.sender_id IS NOT NULL AND r.recipient_id IS NOT NULL;
@@ -0,0 +1,27 @@
+-- Username search. Queries of three or more characters match anywhere in the name
+-- through an FTS5 trigram index; shorter ones are prefix searches on a
+-- case-insensitive index.
+CREATE INDEX IF NOT EXISTS idx_users_username_nocase ON users (username COLLATE NOCASE);
+
+CREATE VIRTUAL TABLE IF NOT EXISTS users_search USING fts5(
+    username,
+    content = 'users',
+    content_rowid = 'id',
+    tokenize = 'trigram'
+);
+
+-- Keep the index in step with every write to users
+CREATE TRIGGER IF NOT EXISTS users_search_insert AFTER INSERT ON users BEGIN
+    INSERT INTO users_search (rowid, username) VALUES (new.id, new.username);
+END;
+
+CREATE TRIGGER IF NOT EXISTS users_search_delete AFTER DELETE ON users BEGIN
+    INSERT INTO users_search (users_search, rowid, username) VALUES ('delete', old.id, old.username);
+END;
+
+CREATE TRIGGER IF NOT EXISTS users_search_update AFTER UPDATE OF username ON users BEGIN
+    INSERT INTO users_search (users_search, rowid, username) VALUES ('delete', old.id, old.username);
+    INSERT INTO users_search (rowid, username) VALUES (new.id, new.username);
+END;
+
+INSERT INTO users_search (users_search) VALUES ('rebuild');
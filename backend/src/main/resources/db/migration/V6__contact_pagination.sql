@@ -0,0 +1,21 @@
+-- Contact lists are paged by username. The name is copied onto the contact row so
+-- a page is a range of one index instead of sorting all contacts of the user.
+ALTER TABLE contact ADD COLUMN contact_username varchar(255);
+UPDATE contact SET contact_username = (SELECT username FROM users WHERE users.id = contact.contact_id);
+CREATE INDEX IF NOT EXISTS idx_contact_user_username ON contact (user_id, contact_username);
+
+-- Filled and kept current by the database, the application never writes the column
+CREATE TRIGGER IF NOT EXISTS contact_username_insert AFTER INSERT ON contact BEGIN
+    UPDATE contact SET contact_username = (SELECT username FROM users WHERE id = new.contact_id) WHERE id = new.id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS contact_username_update AFTER UPDATE OF contact_id ON contact BEGIN
+    UPDATE contact SET contact_username = (SELECT username FROM users WHERE id = new.contact_id) WHERE id = new.id;
+END;
+
+CREATE TRIGGER IF NOT EXISTS users_username_contact_update AFTER UPDATE OF username ON users BEGIN
+    UPDATE contact SET contact_username = new.username WHERE contact_id = new.id;
+END;
+
+-- Pending requests are paged newest first by id: the rowid that ends every index
+-- entry keeps idx_friend_request_recipient_status ordered by it, no new index needed
@@ -0,0 +1,10 @@
+-- Last message id handed out in this database (every shard has its own row). Ids
+-- are allocated here inside the inserting transaction, so nodes sharing the
+-- database never hand out the same one.
+CREATE TABLE IF NOT EXISTS message_id_sequence (
+    id integer not null check (id = 0),
+    last_id bigint not null,
+    primary key (id)
+);
+
+INSERT OR IGNORE INTO message_id_sequence (id, last_id) SELECT 0, COALESCE(MAX(id), 0) FROM chat_message;
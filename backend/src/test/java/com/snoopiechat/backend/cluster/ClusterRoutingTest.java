@@ -0,0 +1,182 @@
+package com.snoopiechat.backend.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.snoopiechat.backend.dto.ChatNotification;
+import com.snoopiechat.backend.dto.PresenceUpdate;
+import com.snoopiechat.backend.event.MessageQueueSubscribedEvent;
+import com.snoopiechat.backend.service.ChatDeliveryService;
+import com.snoopiechat.backend.service.OfflineMessageQueueService;
+import com.snoopiechat.backend.service.UserSessionRegistry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Two nodes on a loopback bus: users connected to one node are reachable from
+ * the other, and get what the other queued while they were offline
+ */
+class ClusterRoutingTest {
+    private static final String CLUSTER = "cluster-routing-test";
+    private static final Long USER = 42L;
+
+    @TempDir
+    Path spillDir;
+
+    private Node a;
+    private Node b;
+
+    @BeforeEach
+    void createNode() throws IOException {
+        a = node("a");
+    }
+
+    @AfterEach
+    void close() {
+        a.close();
+        if (b != null) {
+            b.close();
+        }
+    }
+
+    @Test
+    void sendReachesSessionsOnOtherNode() throws InterruptedException, IOException {
+        a.start();
+        a.sessions.register(USER, "session-1", null);
+
+        // Joins after the user connected, learns about it from the state of a
+        b = node("b");
+        b.start();
+        await(() -> b.sessions.isConnected(USER));
+        assertFalse(b.sessions.isConnectedLocally(USER));
+        assertEquals(Set.of("a"), b.users.nodesOf(USER));
+
+        PresenceUpdate update = new PresenceUpdate(7L, true);
+        assertEquals(1, b.sessions.send(USER, "/queue/presence", update));
+        verify(a.template, timeout(5000)).convertAndSendToUser(eq("session-1"), eq("/queue/presence"), eq(update),
+                anyMap());
+        verify(b.template, never()).convertAndSendToUser(any(), any(), any(), anyMap());
+
+        a.sessions.unregister("session-1");
+        await(() -> !b.sessions.isConnected(USER));
+        assertEquals(0, b.sessions.send(USER, "/queue/presence", update));
+    }
+
+    @Test
+    void leavingNodeTakesItsUsers() throws InterruptedException, IOException {
+        a.start();
+        b = node("b");
+        b.start();
+        b.sessions.register(USER, "session-1", null);
+        await(() -> a.sessions.isConnected(USER));
+
+        ReflectionTestUtils.invokeMethod(b.users, "shutDown");
+        await(() -> !a.sessions.isConnected(USER));
+    }
+
+    @Test
+    void offlineQueueOfOtherNodeIsFlushedOnReconnect() throws InterruptedException, IOException {
+        a.start();
+        b = node("b");
+        b.start();
+        for (long seq = 1; seq <= 3; seq++) {
+            a.delivery.deliver(USER, ChatNotification.builder().id(seq).chatId("1_42").seq(seq).build());
+        }
+        assertTrue(a.offline.hasQueued(USER));
+
+        // Reconnects to the other node
+        b.sessions.register(USER, "session-1", null);
+        await(() -> a.sessions.isConnected(USER));
+        b.delivery.handleMessageQueueSubscribed(new MessageQueueSubscribedEvent(USER, "session-1"));
+
+        ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+        verify(b.template, timeout(5000).times(3)).convertAndSendToUser(eq("session-1"),
+                eq(ChatDeliveryService.DESTINATION), sent.capture(), anyMap());
+        assertEquals(List.of(1L, 2L, 3L), sent.getAllValues().stream()
+                .map(notification -> ((ChatNotification) notification).getSeq())
+                .toList());
+        await(() -> !a.offline.hasQueued(USER));
+    }
+
+    private Node node(String id) throws IOException {
+        return new Node(id, spillDir.resolve(id));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    private static class Node {
+        private final LoopbackClusterBus bus;
+        private final ClusterUserRegistry users;
+        private final SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+        private final UserSessionRegistry sessions;
+        private final OfflineMessageQueueService offline = new OfflineMessageQueueService();
+        private final ChatDeliveryService delivery = new ChatDeliveryService();
+
+        Node(String id, Path spillDir) throws IOException {
+            bus = new LoopbackClusterBus(CLUSTER, id);
+            users = new ClusterUserRegistry(bus);
+            ReflectionTestUtils.setField(users, "heartbeatMs", 1000L);
+            ReflectionTestUtils.setField(users, "nodeTimeoutMs", 3000L);
+            users.init();
+
+            sessions = new UserSessionRegistry(template, new SimpleMeterRegistry(), bus, users);
+            ReflectionTestUtils.setField(sessions, "lockStripes", 4);
+            ReflectionTestUtils.invokeMethod(sessions, "init");
+
+            ReflectionTestUtils.setField(offline, "objectMapper", JsonMapper.builder().findAndAddModules().build());
+            ReflectionTestUtils.setField(offline, "memoryCapacity", 100);
+            ReflectionTestUtils.setField(offline, "maxSpilled", 100);
+            ReflectionTestUtils.setField(offline, "spillDirectory", spillDir.toString());
+            ReflectionTestUtils.invokeMethod(offline, "init");
+
+            ReflectionTestUtils.setField(delivery, "sessionRegistry", sessions);
+            ReflectionTestUtils.setField(delivery, "offlineMessageQueueService", offline);
+            ReflectionTestUtils.setField(delivery, "clusterBus", bus);
+            ReflectionTestUtils.setField(delivery, "clusterUsers", users);
+            ReflectionTestUtils.setField(delivery, "ackTimeoutMs", 5000L);
+            ReflectionTestUtils.setField(delivery, "maxAttempts", 5);
+            ReflectionTestUtils.setField(delivery, "maxPending", 100);
+            ReflectionTestUtils.setField(delivery, "flushBatchSize", 2);
+            ReflectionTestUtils.invokeMethod(delivery, "init");
+        }
+
+        void start() {
+            users.start();
+        }
+
+        void close() {
+            ReflectionTestUtils.invokeMethod(delivery, "shutDown");
+            ReflectionTestUtils.invokeMethod(users, "shutDown");
+            bus.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.snoopiechat.backend.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.snoopiechat.backend.BackendApplication;
+import com.snoopiechat.backend.model.ChatMessage;
+import com.snoopiechat.backend.service.ChatMessageService;
+
+/**
+ * Two nodes of a cluster on the same database store messages at the same time
+ * without handing out an id or sequence number twice
+ */
+class SharedDatabaseTest {
+    private static final int MESSAGES = 20;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void nodesAllocateDistinctIds() throws Exception {
+        try (ConfigurableApplicationContext a = start("a"); ConfigurableApplicationContext b = start("b")) {
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                Future<List<ChatMessage>> fromA = executor.submit(() -> save(a, 1L, 2L));
+                Future<List<ChatMessage>> fromB = executor.submit(() -> save(b, 2L, 1L));
+
+                List<ChatMessage> saved = new ArrayList<>(fromA.get());
+                saved.addAll(fromB.get());
+                assertEquals(2 * MESSAGES, new HashSet<>(saved.stream().map(ChatMessage::getId).toList()).size());
+                assertEquals(2 * MESSAGES, new HashSet<>(saved.stream().map(ChatMessage::getSeq).toList()).size());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext start(String node) {
+        // As arguments, default properties would lose against application.properties
+        return new SpringApplicationBuilder(BackendApplication.class)
+            .run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:sqlite:" + dir.resolve("shared.db"),
+                "--chat.cold-storage.dir=" + dir.resolve("cold"),
+                "--chat.offline-queue.spill-dir=" + dir.resolve("offline-" + node),
+                "--chat.cluster.name=shared-database-test",
+                "--chat.cluster.node-id=" + node,
+                "--logging.level.root=INFO",
+                "--spring.jpa.show-sql=false");
+    }
+
+    private static List<ChatMessage> save(ConfigurableApplicationContext node, Long senderId, Long recipientId) {
+        ChatMessageService service = node.getBean(ChatMessageService.class);
+        List<ChatMessage> saved = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            saved.add(service.save(ChatMessage.builder()
+                .senderId(senderId)
+                .recipientId(recipientId)
+                .content("message".getBytes(StandardCharsets.UTF_8))
+                .timestamp(LocalDateTime.now())
+                .build()));
+        }
+        return saved;
+    }
+}
@@ -0,0 +1,152 @@
+package com.snoopiechat.backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Frames queued behind a running write go out together, in order, with the
+ * next one; a session whose queue or write exceeds its limit is closed and its
+ * queued bytes are released
+ */
+class CoalescingWebSocketHandlerTest {
+    private static final int BUFFER_SIZE_LIMIT = 10;
+    private static final long SEND_TIME_LIMIT = 50;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // The first write blocks until released, like a write to a slow client
+    private final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+    private final List<String> written = new CopyOnWriteArrayList<>();
+
+    private WebSocketSession socket;
+    private CoalescingWebSocketHandler handler;
+    private WebSocketSession session;
+
+    @BeforeEach
+    void connect() throws Exception {
+        socket = mock(WebSocketSession.class);
+        when(socket.getId()).thenReturn("session-1");
+        when(socket.getAttributes()).thenReturn(new HashMap<>());
+        doAnswer(invocation -> {
+            if (written.isEmpty()) {
+                firstWriteStarted.countDown();
+                releaseFirstWrite.await(5, TimeUnit.SECONDS);
+            }
+            written.add(((WebSocketMessage<?>) invocation.getArgument(0)).getPayload().toString());
+            return null;
+        }).when(socket).sendMessage(any());
+
+        WebSocketHandler delegate = mock(WebSocketHandler.class);
+        handler = new CoalescingWebSocketHandler(delegate, executor, 8192, BUFFER_SIZE_LIMIT, SEND_TIME_LIMIT,
+                new MessageCompressor(1024, 1, meterRegistry), meterRegistry);
+        handler.afterConnectionEstablished(socket);
+
+        ArgumentCaptor<WebSocketSession> coalescing = ArgumentCaptor.forClass(WebSocketSession.class);
+        verify(delegate).afterConnectionEstablished(coalescing.capture());
+        session = coalescing.getValue();
+    }
+
+    @AfterEach
+    void shutDown() {
+        releaseFirstWrite.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void batchesFramesQueuedDuringWrite() throws Exception {
+        session.sendMessage(new TextMessage("a"));
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+
+        session.sendMessage(new TextMessage("b"));
+        session.sendMessage(new TextMessage("c"));
+        session.sendMessage(new TextMessage("d"));
+        assertEquals(3, queuedBytes());
+
+        releaseFirstWrite.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(List.of("a", "bcd"), written);
+        assertEquals(0, queuedBytes());
+        verify(socket, never()).close(any());
+    }
+
+    @Test
+    void closesOnBufferSizeLimit() throws Exception {
+        session.sendMessage(new TextMessage("a"));
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+
+        session.sendMessage(new TextMessage("123456"));
+        verify(socket, never()).close(any());
+        session.sendMessage(new TextMessage("123456"));
+
+        verify(socket).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(0, queuedBytes());
+        assertEquals(1, meterRegistry.counter("chat.ws.outbound.slow.consumers").count());
+
+        // Nothing is queued or written after the close
+        session.sendMessage(new TextMessage("b"));
+        releaseFirstWrite.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(List.of("a"), written);
+        assertEquals(0, queuedBytes());
+    }
+
+    @Test
+    void closesOnSendTimeLimit() throws Exception {
+        session.sendMessage(new TextMessage("a"));
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+        session.sendMessage(new TextMessage("b"));
+
+        // The periodic check notices the stalled write without another frame
+        handler.checkLimits();
+        verify(socket, never()).close(any());
+        Thread.sleep(SEND_TIME_LIMIT * 2);
+        handler.checkLimits();
+
+        verify(socket).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(0, queuedBytes());
+    }
+
+    @Test
+    void closedConnectionReleasesQueuedBytes() throws Exception {
+        session.sendMessage(new TextMessage("a"));
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+        session.sendMessage(new TextMessage("b"));
+        assertEquals(1, queuedBytes());
+
+        handler.afterConnectionClosed(socket, CloseStatus.GOING_AWAY);
+        assertEquals(0, queuedBytes());
+    }
+
+    private double queuedBytes() {
+        return meterRegistry.get("chat.ws.outbound.queued.bytes").gauge().value();
+    }
+}
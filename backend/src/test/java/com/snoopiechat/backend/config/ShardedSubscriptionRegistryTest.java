@@ -0,0 +1,97 @@
+package com.snoopiechat.backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Messages for a user destination are matched in the shard of the addressed
+ * session only, other destinations in every shard
+ */
+class ShardedSubscriptionRegistryTest {
+    private static final int SHARDS = 4;
+
+    private ShardedSubscriptionRegistry registry;
+    private DefaultSubscriptionRegistry[] shards;
+
+    @BeforeEach
+    void createRegistry() {
+        registry = new ShardedSubscriptionRegistry(SHARDS, 1024);
+        shards = (DefaultSubscriptionRegistry[]) ReflectionTestUtils.getField(registry, "shards");
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = spy(shards[i]);
+        }
+
+        // One session per user, users 0 to 3 land on shards 0 to 3
+        for (long user = 0; user < SHARDS; user++) {
+            String session = "session" + user;
+            registry.registerSubscription(subscribe(user, session, "sub-messages", "/queue/messages-user" + session));
+            registry.registerSubscription(subscribe(user, session, "sub-announcements", "/queue/announcements"));
+        }
+    }
+
+    @Test
+    void userDestinationIsFoundInItsShard() {
+        MultiValueMap<String, String> found = registry.findSubscriptions(message("/queue/messages-usersession2"));
+
+        assertEquals(Map.of("session2", List.of("sub-messages")), found);
+        verify(shards[2]).findSubscriptions(any());
+        for (int shard : List.of(0, 1, 3)) {
+            verify(shards[shard], never()).findSubscriptions(any());
+        }
+    }
+
+    @Test
+    void otherDestinationsAreFoundInEveryShard() {
+        MultiValueMap<String, String> found = registry.findSubscriptions(message("/queue/announcements"));
+
+        assertEquals(Set.of("session0", "session1", "session2", "session3"), found.keySet());
+        for (DefaultSubscriptionRegistry shard : shards) {
+            verify(shard).findSubscriptions(any());
+        }
+    }
+
+    @Test
+    void disconnectedSessionIsNotFound() {
+        registry.unregisterAllSubscriptions("session2");
+
+        assertEquals(Map.of(), registry.findSubscriptions(message("/queue/messages-usersession2")));
+        assertEquals(Set.of("session0", "session1", "session3"),
+                registry.findSubscriptions(message("/queue/announcements")).keySet());
+    }
+
+    private static Message<byte[]> subscribe(Long userId, String sessionId, String subscriptionId,
+            String destination) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        headers.setSessionId(sessionId);
+        headers.setSubscriptionId(subscriptionId);
+        headers.setDestination(destination);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("user_id", userId);
+        headers.setSessionAttributes(attributes);
+        return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+    }
+
+    private static Message<byte[]> message(String destination) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+    }
+}
@@ -0,0 +1,301 @@
+package com.snoopiechat.backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snoopiechat.backend.dto.ChatNotification;
+import com.snoopiechat.backend.model.Users;
+import com.snoopiechat.backend.repository.UserRepo;
+import com.snoopiechat.backend.service.JWTService;
+import com.snoopiechat.backend.service.UserSessionRegistry;
+
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Delivers the same notifications over the native endpoint (JSON, CBOR and
+ * compressed JSON) and the SockJS endpoint and reports the bytes received and
+ * the CPU time (server and client, both run in this JVM) per message
+ */
+// Every run is queued at once, that mustn't count as a slow consumer
+@Tag("benchmark")
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = { "chat.broker.send-buffer-limit-bytes=67108864", "chat.websocket.compression.enabled=true" })
+class WebSocketTransportBenchmarkTest {
+    private static final int WARMUP = 5000;
+    private static final int MESSAGES = 5000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private JWTService jwtService;
+
+    @Autowired
+    private UserSessionRegistry sessionRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        Path dir = Files.createTempDirectory("websocket-benchmark");
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + dir.resolve("test.db"));
+    }
+
+    @Test
+    void nativeAndSockJs() throws Exception {
+        Users user = new Users();
+        user.setUsername("benchmark");
+        user.setEmail("benchmark@example.com");
+        user = userRepo.save(user);
+
+        // SockJS escapes a coalesced batch into a larger frame than the 8 KiB default buffer
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        container.setDefaultMaxTextMessageBufferSize(1 << 20);
+        CountingWebSocketClient nativeClient = new CountingWebSocketClient(new StandardWebSocketClient(container));
+        CountingWebSocketClient sockJsClient = new CountingWebSocketClient(new StandardWebSocketClient(container));
+        CountingWebSocketClient deflateClient = new CountingWebSocketClient(new StandardWebSocketClient(container));
+        deflateClient.inflate = true;
+        SockJsClient sockJs = new SockJsClient(List.of(new WebSocketTransport(sockJsClient)));
+
+        Result nativeResult = run(user, nativeClient, nativeClient, "ws://localhost:" + port + "/ws-chat-native");
+        Result sockJsResult = run(user, sockJs, sockJsClient, "http://localhost:" + port + "/ws-chat");
+        Result cborResult = run(user, nativeClient, nativeClient,
+                "ws://localhost:" + port + "/ws-chat-native?encoding=cbor");
+        Result deflateResult = run(user, deflateClient, deflateClient,
+                "ws://localhost:" + port + "/ws-chat-native?compression=deflate");
+
+        log.info("native: {}, sockjs: {}, native cbor: {}, native deflate: {}",
+                nativeResult, sockJsResult, cborResult, deflateResult);
+        assertTrue(nativeResult.bytesPerMessage() < sockJsResult.bytesPerMessage());
+        assertTrue(cborResult.bytesPerMessage() < nativeResult.bytesPerMessage());
+        assertTrue(deflateResult.bytesPerMessage() < nativeResult.bytesPerMessage());
+    }
+
+    /**
+     * Encoding alone, without the transport
+     */
+    @Test
+    void jsonAndCborEncoding() {
+        MappingJackson2MessageConverter json = new MappingJackson2MessageConverter(objectMapper);
+        CborMessageConverter cbor = new CborMessageConverter();
+        MessageHeaders cborHeaders = new MessageHeaders(
+                Map.of(MessageHeaders.CONTENT_TYPE, CborMessageConverter.CONTENT_TYPE));
+
+        ChatNotification notification = notification(1L, 1L);
+        for (int i = 0; i < WARMUP; i++) {
+            json.toMessage(notification, null);
+            cbor.toMessage(notification, cborHeaders);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long jsonCpu = threads.getCurrentThreadCpuTime();
+        long jsonBytes = 0;
+        for (int i = 0; i < MESSAGES; i++) {
+            jsonBytes += ((byte[]) json.toMessage(notification, null).getPayload()).length;
+        }
+        long cborCpu = threads.getCurrentThreadCpuTime();
+        long cborBytes = 0;
+        for (int i = 0; i < MESSAGES; i++) {
+            cborBytes += ((byte[]) cbor.toMessage(notification, cborHeaders).getPayload()).length;
+        }
+        long end = threads.getCurrentThreadCpuTime();
+
+        log.info("json: {}, cbor: {}", new Result(jsonBytes, cborCpu - jsonCpu),
+                new Result(cborBytes, end - cborCpu));
+        assertTrue(cborBytes < jsonBytes);
+        assertEquals(notification.getTimestamp(),
+                ((ChatNotification) cbor.fromMessage(cbor.toMessage(notification, cborHeaders),
+                        ChatNotification.class)).getTimestamp());
+    }
+
+    private Result run(Users user, WebSocketClient client, CountingWebSocketClient counter, String url)
+            throws Exception {
+        WebSocketStompClient stompClient = new WebSocketStompClient(client);
+        stompClient.setMessageConverter(new CompositeMessageConverter(
+                List.of(new CborMessageConverter(), new MappingJackson2MessageConverter(objectMapper))));
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.add("Cookie", "token=" + jwtService.generateToken(user.getEmail()));
+
+        AtomicLong received = new AtomicLong();
+        StompSession session = stompClient.connectAsync(url, headers, new StompSessionHandlerAdapter() {})
+                .get(10, TimeUnit.SECONDS);
+        session.subscribe("/user/queue/messages", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders frameHeaders) {
+                return ChatNotification.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders frameHeaders, Object payload) {
+                received.incrementAndGet();
+            }
+        });
+        // The receipt of the subscription isn't requested, wait until the session shows up
+        for (int i = 0; i < 100 && sessionRegistry.sessionsOf(user.getId()).isEmpty(); i++) {
+            Thread.sleep(50);
+        }
+        Thread.sleep(200);
+
+        try {
+            send(user, WARMUP, received);
+            long bytes = counter.bytes.get();
+            long cpu = processCpuTime();
+            send(user, MESSAGES, received);
+            return new Result(counter.bytes.get() - bytes, processCpuTime() - cpu);
+        } finally {
+            session.disconnect();
+        }
+    }
+
+    private void send(Users user, int count, AtomicLong received) throws InterruptedException {
+        long target = received.get() + count;
+        for (int i = 0; i < count; i++) {
+            sessionRegistry.send(user.getId(), "/queue/messages", notification((long) i, user.getId()));
+        }
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (received.get() < target) {
+            assertTrue(System.currentTimeMillis() < deadline, "received " + received.get() + " of " + target);
+            Thread.sleep(10);
+        }
+    }
+
+    private static ChatNotification notification(Long id, Long userId) {
+        // Content is encrypted, zeros would compress far better
+        byte[] content = new byte[256];
+        ThreadLocalRandom.current().nextBytes(content);
+        return ChatNotification.builder()
+                .id(id)
+                .chatId("1_2")
+                .seq(id)
+                .senderId(userId)
+                .recipientId(userId)
+                .content(content)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private static long processCpuTime() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    private record Result(long bytes, long cpuNanos) {
+        double bytesPerMessage() {
+            return (double) bytes / MESSAGES;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f bytes/message, %.1f us CPU/message", bytesPerMessage(),
+                    cpuNanos / 1000.0 / MESSAGES);
+        }
+    }
+
+    /**
+     * Counts the payload bytes of the WebSocket messages received, optionally
+     * inflating compressed ones
+     */
+    private static class CountingWebSocketClient implements WebSocketClient {
+        private final WebSocketClient delegate;
+        private final AtomicLong bytes = new AtomicLong();
+        private boolean inflate;
+
+        CountingWebSocketClient(WebSocketClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public CompletableFuture<WebSocketSession> execute(WebSocketHandler handler, String uriTemplate,
+                Object... uriVariables) {
+            return delegate.execute(counting(handler), uriTemplate, uriVariables);
+        }
+
+        @Override
+        public CompletableFuture<WebSocketSession> execute(WebSocketHandler handler, WebSocketHttpHeaders headers,
+                URI uri) {
+            return delegate.execute(counting(handler), headers, uri);
+        }
+
+        private WebSocketHandler counting(WebSocketHandler handler) {
+            return new WebSocketHandlerDecorator(handler) {
+                @Override
+                public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                    bytes.addAndGet(message.getPayloadLength());
+                    if (inflate && message instanceof BinaryMessage binary) {
+                        message = new TextMessage(inflate(binary.getPayload()));
+                    }
+                    super.handleMessage(session, message);
+                }
+            };
+        }
+
+        private static byte[] inflate(ByteBuffer payload) throws DataFormatException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(payload);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                while (!inflater.finished()) {
+                    out.write(buffer, 0, inflater.inflate(buffer));
+                }
+                return out.toByteArray();
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.snoopiechat.backend.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.snoopiechat.backend.repository.ContactRepo;
+import com.snoopiechat.backend.repository.UserRepo;
+import com.snoopiechat.backend.service.PkiService;
+import com.snoopiechat.backend.service.UserSessionRegistry;
+
+/**
+ * Requests that read before they write: with the read-only reader pool behind
+ * the connection proxy, a connection held open for the whole request would
+ * make their writes fail. Presence is only shown between mutual contacts that
+ * didn't block each other. The cached pending request count follows accepts.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ContactControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ContactRepo contactRepo;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private UserSessionRegistry sessionRegistry;
+
+    @MockitoBean
+    private PkiService pkiService;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        Path dir = Files.createTempDirectory("contact-controller");
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + dir.resolve("test.db"));
+        registry.add("chat.cold-storage.dir", () -> dir.resolve("cold").toString());
+        registry.add("chat.offline-queue.spill-dir", () -> dir.resolve("offline").toString());
+    }
+
+    @Test
+    void registerAndAddContact() throws Exception {
+        register("alice");
+        register("bob");
+        String alice = login("alice");
+        String bob = login("bob");
+
+        befriend(alice, "bob", bob);
+        long contactId = contactId("bob", "alice");
+
+        mockMvc.perform(put("/contacts/{contactId}/toggle-block", contactId)
+                .header("Authorization", "Bearer " + bob))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.blocked").value(true));
+
+        remove(bob, contactId);
+    }
+
+    @Test
+    void addContactAgainAfterRemoving() throws Exception {
+        register("carol");
+        register("dave");
+        String carol = login("carol");
+        String dave = login("dave");
+
+        // Dave drops Carol, Carol keeps Dave and accepts a new request
+        befriend(carol, "dave", dave);
+        remove(dave, contactId("dave", "carol"));
+        befriend(dave, "carol", carol);
+
+        // Both drop each other, the accepted request of the same pair stays
+        remove(carol, contactId("carol", "dave"));
+        remove(dave, contactId("dave", "carol"));
+        befriend(carol, "dave", dave);
+    }
+
+    @Test
+    void presenceOnlyBetweenMutualContacts() throws Exception {
+        register("erin");
+        register("frank");
+        String erin = login("erin");
+        String frank = login("frank");
+        Long erinId = userRepo.findByUsername("erin").getId();
+        Long frankId = userRepo.findByUsername("frank").getId();
+
+        befriend(erin, "frank", frank);
+        sessionRegistry.register(frankId, "frank-session", null);
+        try {
+            expectOnline(erin, true);
+            assertEquals(List.of(erinId), contactRepo.findMutualWatcherIds(frankId));
+
+            // Frank blocks Erin
+            long frankToErin = contactId("frank", "erin");
+            toggleBlock(frank, frankToErin);
+            expectOnline(erin, false);
+            assertEquals(List.of(), contactRepo.findMutualWatcherIds(frankId));
+            toggleBlock(frank, frankToErin);
+            expectOnline(erin, true);
+
+            // Frank removes Erin, who still has Frank in her list
+            remove(frank, frankToErin);
+            expectOnline(erin, false);
+            assertEquals(List.of(), contactRepo.findMutualWatcherIds(frankId));
+        } finally {
+            sessionRegistry.unregister("frank-session");
+        }
+    }
+
+    private void expectOnline(String token, boolean online) throws Exception {
+        mockMvc.perform(get("/contacts")
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.contacts[0].online").value(online));
+    }
+
+    private void toggleBlock(String token, long contactId) throws Exception {
+        mockMvc.perform(put("/contacts/{contactId}/toggle-block", contactId)
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk());
+    }
+
+    private void befriend(String senderToken, String recipientName, String recipientToken) throws Exception {
+        mockMvc.perform(post("/contacts/add-contact")
+                .header("Authorization", "Bearer " + senderToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\":\"%s\"}".formatted(recipientName)))
+            .andExpect(status().isCreated());
+
+        JsonNode pending = json(mockMvc.perform(get("/contacts/friend-requests/pending")
+                .header("Authorization", "Bearer " + recipientToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.requests.length()").value(1))
+            .andReturn().getResponse().getContentAsString());
+
+        expectPendingCount(recipientToken, 1);
+
+        String accept = "{\"id\":" + pending.at("/requests/0/id").asLong() + "}";
+        mockMvc.perform(post("/contacts/accept-contact")
+                .header("Authorization", "Bearer " + recipientToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(accept))
+            .andExpect(status().isCreated());
+        // The cached count follows the change without a reload, a repeated accept doesn't move it
+        expectPendingCount(recipientToken, 0);
+        mockMvc.perform(post("/contacts/accept-contact")
+                .header("Authorization", "Bearer " + recipientToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(accept))
+            .andExpect(status().isConflict());
+        expectPendingCount(recipientToken, 0);
+    }
+
+    private void expectPendingCount(String token, long count) throws Exception {
+        mockMvc.perform(get("/contacts/friend-requests/pending/count")
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(content().string(Long.toString(count)));
+    }
+
+    // Removing and blocking take the id of the contact row, which the contact list doesn't show
+    private long contactId(String username, String contactName) {
+        return contactRepo.findByUserAndContact(userRepo.findByUsername(username), userRepo.findByUsername(contactName))
+            .orElseThrow()
+            .getId();
+    }
+
+    private void remove(String user, long contactId) throws Exception {
+        mockMvc.perform(delete("/contacts/{contactId}", contactId)
+                .header("Authorization", "Bearer " + user))
+            .andExpect(status().isNoContent());
+    }
+
+    private void register(String username) throws Exception {
+        mockMvc.perform(post("/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                    {"userData": {"username": "%s", "email": "%s@example.com", "password": "secret"},
+                     "publicKey": "public-key", "identityPublicKey": "identity-key"}
+                    """.formatted(username, username)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.username").value(username));
+    }
+
+    private String login(String username) throws Exception {
+        return mockMvc.perform(post("/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\":\"%s@example.com\",\"password\":\"secret\"}".formatted(username)))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+    }
+
+    private JsonNode json(String body) throws IOException {
+        return objectMapper.readTree(body);
+    }
+}
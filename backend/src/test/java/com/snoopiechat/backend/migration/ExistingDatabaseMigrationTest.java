@@ -0,0 +1,88 @@
+package com.snoopiechat.backend.migration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Migrates a database from before the migrations, holding the duplicate rows
+ * the unique indexes of V3 don't allow, and checks that nothing but repeats
+ * is removed
+ */
+class ExistingDatabaseMigrationTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void keepsHistoryAndBlocksOfDuplicates() throws SQLException, IOException {
+        String url = "jdbc:sqlite:" + dir.resolve("existing.db");
+        try (Connection connection = DriverManager.getConnection(url); Statement statement = connection.createStatement()) {
+            try (InputStream in = getClass().getResourceAsStream("/db/migration/V1__baseline.sql")) {
+                for (String sql : new String(in.readAllBytes(), StandardCharsets.UTF_8).split(";")) {
+                    if (!sql.isBlank()) {
+                        statement.execute(sql);
+                    }
+                }
+            }
+            statement.execute("""
+                INSERT INTO friend_request (id, status, sender_id, recipient_id) VALUES
+                    (1, 'ACCEPTED', 1, 2), (2, 'REJECTED', 1, 2), (3, 'PENDING', 1, 2), (4, 'PENDING', 1, 2)
+                """);
+            // The block was set on the second row
+            statement.execute("""
+                INSERT INTO contact (id, blocked, user_id, contact_id) VALUES
+                    (1, 0, 1, 2), (2, 1, 1, 2), (3, 0, 2, 1), (4, 0, 2, 1)
+                """);
+            statement.execute("""
+                INSERT INTO chat_room (id, chat_id, sender_id, recipient_id) VALUES
+                    (1, '1_2', 1, 2), (2, '1_2', 2, 1), (3, '1_2', 1, 2), (4, '1_2', 2, 1)
+                """);
+        }
+
+        Flyway.configure()
+            .dataSource(url, null, null)
+            .javaMigrations(new V2__AddMissingColumns())
+            .baselineOnMigrate(true)
+            .baselineVersion("0")
+            .load()
+            .migrate();
+
+        try (Connection connection = DriverManager.getConnection(url); Statement statement = connection.createStatement()) {
+            assertEquals(List.of("1 ACCEPTED", "2 REJECTED", "3 PENDING"),
+                    rows(statement, "SELECT id || ' ' || status FROM friend_request ORDER BY id"));
+            assertEquals(List.of("1 1", "3 0"), rows(statement, "SELECT id || ' ' || blocked FROM contact ORDER BY id"));
+            assertEquals(List.of("1 1_2", "2 1_2"), rows(statement, "SELECT id || ' ' || chat_id FROM chat_room ORDER BY id"));
+
+            // An answered pair can ask again, but only once at a time
+            statement.execute("UPDATE friend_request SET status = 'ACCEPTED' WHERE id = 3");
+            statement.execute("INSERT INTO friend_request (status, sender_id, recipient_id) VALUES ('PENDING', 1, 2)");
+            assertThrows(SQLException.class, () -> statement.execute(
+                    "INSERT INTO friend_request (status, sender_id, recipient_id) VALUES ('PENDING', 1, 2)"));
+        }
+    }
+
+    private static List<String> rows(Statement statement, String sql) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (ResultSet result = statement.executeQuery(sql)) {
+            while (result.next()) {
+                rows.add(result.getString(1));
+            }
+        }
+        return rows;
+    }
+}
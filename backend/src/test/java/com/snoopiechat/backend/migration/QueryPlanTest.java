@@ -0,0 +1,210 @@
+package com.snoopiechat.backend.migration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.jpa.repository.Query;
+
+import com.snoopiechat.backend.repository.ChatMessageRepo;
+import com.snoopiechat.backend.repository.ChatRetentionPolicyRepo;
+import com.snoopiechat.backend.repository.ChatRoomRepo;
+import com.snoopiechat.backend.repository.ChatSequenceRepo;
+import com.snoopiechat.backend.repository.ContactRepo;
+import com.snoopiechat.backend.repository.ConversationSummaryRepo;
+import com.snoopiechat.backend.repository.DeviceSyncStateRepo;
+import com.snoopiechat.backend.repository.FriendRequestRepo;
+import com.snoopiechat.backend.repository.UserRepo;
+
+/**
+ * Runs the migrations on an empty database and checks with EXPLAIN QUERY PLAN
+ * that the hot repository queries are served by an index: no full table scan
+ * and no temporary sort. Native queries are read from the repositories, the
+ * SQL Hibernate generates for the others is written out by hand.
+ */
+class QueryPlanTest {
+    private static final List<Class<?>> REPOSITORIES = List.of(
+        ChatMessageRepo.class,
+        ChatRetentionPolicyRepo.class,
+        ChatRoomRepo.class,
+        ChatSequenceRepo.class,
+        ContactRepo.class,
+        ConversationSummaryRepo.class,
+        DeviceSyncStateRepo.class,
+        FriendRequestRepo.class,
+        UserRepo.class
+    );
+
+    private static final Set<String> RANKED = Set.of("UserRepo.searchByTrigram");
+
+    private static final Pattern PARAMETER = Pattern.compile(":\\w+");
+
+    @TempDir
+    static Path dir;
+
+    private static Connection connection;
+
+    @BeforeAll
+    static void migrate() throws SQLException {
+        String url = "jdbc:sqlite:" + dir.resolve("plan.db");
+        Flyway.configure()
+            .dataSource(url, null, null)
+            .javaMigrations(new V2__AddMissingColumns())
+            .load()
+            .migrate();
+        connection = DriverManager.getConnection(url);
+    }
+
+    @AfterAll
+    static void close() throws SQLException {
+        connection.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        // ChatMessageRepo.findLatestPage
+        "SELECT * FROM chat_message WHERE chat_id = ? AND (is_dummy IS NULL OR is_dummy = 0) ORDER BY timestamp DESC, id DESC LIMIT ?",
+        // ChatMessageRepo.findPageBefore
+        "SELECT * FROM chat_message WHERE chat_id = ? AND (is_dummy IS NULL OR is_dummy = 0) AND (timestamp < ? OR (timestamp = ? AND id < ?)) ORDER BY timestamp DESC, id DESC LIMIT ?",
+        // ChatMessageRepo.findPageAfter
+        "SELECT * FROM chat_message WHERE chat_id = ? AND (is_dummy IS NULL OR is_dummy = 0) AND (timestamp > ? OR (timestamp = ? AND id > ?)) ORDER BY timestamp ASC, id ASC LIMIT ?",
+        // ChatMessageRepo.findTopByChatIdOrderByTimestampDesc
+        "SELECT * FROM chat_message WHERE chat_id = ? ORDER BY timestamp DESC LIMIT 1",
+        // ChatMessageRepo.findBySenderIdAndClientMessageId
+        "SELECT * FROM chat_message WHERE sender_id = ? AND client_message_id = ?",
+        // ChatRoomRepo.findFirstBySenderIdAndRecipientIdOrderByIdAsc
+        "SELECT * FROM chat_room WHERE sender_id = ? AND recipient_id = ? ORDER BY id ASC LIMIT 1",
+        // ContactRepo.findContactPage
+        """
+        SELECT u.id, u.username, u.email, c.blocked, s.last_message, s.last_timestamp, s.last_seq - s.read_seq
+        FROM contact c
+        JOIN users u ON u.id = c.contact_id
+        LEFT JOIN conversation_summary s ON s.user_id = c.user_id AND s.peer_id = u.id
+        WHERE c.user_id = ? AND c.contact_username > ?
+        ORDER BY c.contact_username
+        LIMIT ?
+        """,
+        // ContactRepo.findContactEntry
+        """
+        SELECT u.id, u.username, u.email, c.blocked, s.last_message, s.last_timestamp, s.last_seq - s.read_seq
+        FROM contact c
+        JOIN users u ON u.id = c.contact_id
+        LEFT JOIN conversation_summary s ON s.user_id = c.user_id AND s.peer_id = u.id
+        WHERE c.user_id = ? AND u.id = ?
+        """,
+        // ContactRepo.findByUser
+        "SELECT * FROM contact WHERE user_id = ?",
+        // ContactRepo.findByContact
+        "SELECT * FROM contact WHERE contact_id = ?",
+        // ContactRepo.findByUserAndContact / existsByUserAndContact
+        "SELECT * FROM contact WHERE user_id = ? AND contact_id = ?",
+        // ContactRepo.findMutualWatcherIds
+        """
+        SELECT c.user_id FROM contact c, contact r
+        WHERE c.contact_id = ? AND c.blocked = 0 AND r.user_id = ? AND r.contact_id = c.user_id AND r.blocked = 0
+        """,
+        // ContactRepo.findMutualContactIds
+        """
+        SELECT c.contact_id FROM contact c, contact r
+        WHERE c.user_id = ? AND c.contact_id IN (?, ?) AND c.blocked = 0
+          AND r.user_id = c.contact_id AND r.contact_id = ? AND r.blocked = 0
+        """,
+        // FriendRequestRepo.countByRecipientIdAndStatus
+        "SELECT count(*) FROM friend_request WHERE recipient_id = ? AND status = ?",
+        // FriendRequestRepo.findRequestsTo
+        """
+        SELECT r.id, s.username FROM friend_request r JOIN users s ON s.id = r.sender_id
+        WHERE r.recipient_id = ? AND r.status = ? AND r.id < ?
+        ORDER BY r.id DESC
+        LIMIT ?
+        """,
+        // FriendRequestRepo.existsBySenderAndRecipientAndStatus
+        "SELECT id FROM friend_request WHERE sender_id = ? AND recipient_id = ? AND status = ? LIMIT 1",
+        // UserRepo.findByUsername / existsByUsername
+        "SELECT * FROM users WHERE username = ?",
+        // UserRepo.findByEmail / existsByEmail / findClientDtoByEmail
+        "SELECT * FROM users WHERE email = ?",
+        // DeviceSyncStateRepo.upsertHighWaterMark conflict target
+        "SELECT * FROM device_sync_state WHERE user_id = ? AND device_id = ? AND chat_id = ?",
+        // ChatMessageRepo.findAfterSeq
+        "SELECT * FROM chat_message WHERE chat_id = ? AND seq > ? AND (is_dummy IS NULL OR is_dummy = 0) ORDER BY seq ASC LIMIT ?",
+        // ChatSequenceRepo.findAllById
+        "SELECT * FROM chat_sequence WHERE chat_id IN (?, ?, ?)",
+        // ChatRoomRepo.findChatIdsBySenderId
+        "SELECT chat_id FROM chat_room WHERE sender_id = ?",
+        // ConversationSummaryRepo.markRead / upsertLastMessage conflict target
+        "SELECT * FROM conversation_summary WHERE user_id = ? AND peer_id = ?",
+        // DeviceSyncStateRepo.findByUserIdAndDeviceId
+        "SELECT * FROM device_sync_state WHERE user_id = ? AND device_id = ?",
+    })
+    void hotQueryUsesIndex(String sql) throws SQLException {
+        List<String> plan = explain(sql);
+
+        assertTrue(plan.stream().anyMatch(step -> step.startsWith("SEARCH")), () -> "No index search: " + plan);
+        assertFalse(plan.stream().anyMatch(step -> step.startsWith("SCAN")), () -> "Full scan: " + plan);
+        assertFalse(plan.stream().anyMatch(step -> step.contains("TEMP B-TREE")), () -> "Sorts in memory: " + plan);
+    }
+
+    /**
+     * The native queries exactly as the repositories declare them. The full text
+     * search ranks its matches, so only that one may sort.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("nativeQueries")
+    void nativeQueryUsesIndex(String name, String sql) throws SQLException {
+        List<String> plan = explain(PARAMETER.matcher(sql).replaceAll("?"));
+
+        assertFalse(plan.stream().anyMatch(step -> step.startsWith("SCAN") && !step.contains("VIRTUAL TABLE INDEX")),
+            () -> "Full scan: " + plan);
+        if (!RANKED.contains(name)) {
+            assertFalse(plan.stream().anyMatch(step -> step.contains("TEMP B-TREE")), () -> "Sorts in memory: " + plan);
+        }
+        if (sql.strip().startsWith("SELECT")) {
+            assertTrue(plan.stream().anyMatch(step -> step.startsWith("SEARCH") || step.contains("VIRTUAL TABLE INDEX")),
+                () -> "No index search: " + plan);
+        }
+    }
+
+    static Stream<Arguments> nativeQueries() {
+        return REPOSITORIES.stream()
+            .flatMap(repository -> Arrays.stream(repository.getDeclaredMethods())
+                .filter(method -> method.isAnnotationPresent(Query.class)
+                    && method.getAnnotation(Query.class).nativeQuery())
+                .sorted(Comparator.comparing(Method::getName))
+                .map(method -> Arguments.of(repository.getSimpleName() + "." + method.getName(),
+                    method.getAnnotation(Query.class).value())));
+    }
+
+    private static List<String> explain(String sql) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+             ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                plan.add(rs.getString("detail"));
+            }
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,112 @@
+package com.snoopiechat.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.snoopiechat.backend.model.ChatRoom;
+import com.snoopiechat.backend.repository.ChatRoomRepo;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Room ids come from the cache once known, each direction with the id of its
+ * own row, and concurrent first messages of both sides end up with a single room
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ChatRoomServiceTest {
+    private static final int THREADS = 8;
+
+    @Autowired
+    private ChatRoomService chatRoomService;
+
+    @Autowired
+    private ChatRoomRepo chatRoomRepo;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        Path dir = Files.createTempDirectory("chat-room");
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + dir.resolve("test.db"));
+    }
+
+    @Test
+    void knownRoomsComeFromTheCache() {
+        String chatId = chatRoomService.getChatRoomId(1L, 2L, true).orElseThrow();
+        assertEquals("1_2", chatId);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // The creator caches both directions
+        assertEquals(Optional.of(chatId), chatRoomService.getChatRoomId(1L, 2L, false));
+        assertEquals(Optional.of(chatId), chatRoomService.getChatRoomId(2L, 1L, false));
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        // Misses aren't cached
+        assertEquals(Optional.empty(), chatRoomService.getChatRoomId(1L, 3L, false));
+        assertEquals(Optional.empty(), chatRoomService.getChatRoomId(1L, 3L, false));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void reverseDirectionCachesItsOwnRow() {
+        // An older database where only the other side's row has a legacy id
+        chatRoomRepo.insertIfAbsent("legacy", 31L, 30L);
+
+        assertEquals("30_31", chatRoomService.getChatRoomId(30L, 31L, true).orElseThrow());
+        assertEquals(Optional.of("legacy"), chatRoomService.getChatRoomId(31L, 30L, false));
+    }
+
+    @Test
+    void concurrentFirstMessagesCreateOneRoom() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                // Half of the threads write as each side
+                long sender = i % 2 == 0 ? 10L : 20L;
+                long recipient = i % 2 == 0 ? 20L : 10L;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return chatRoomService.getChatRoomId(sender, recipient, true).orElseThrow();
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                assertEquals("10_20", result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // One row per direction
+        List<ChatRoom> rooms = chatRoomRepo.findAll().stream()
+            .filter(room -> "10_20".equals(room.getChatId()))
+            .toList();
+        assertEquals(2, rooms.size());
+        assertEquals(Set.of(10L, 20L), rooms.stream().map(ChatRoom::getSenderId).collect(Collectors.toSet()));
+    }
+}
@@ -0,0 +1,105 @@
+package com.snoopiechat.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.snoopiechat.backend.dto.ContactDTO;
+import com.snoopiechat.backend.model.ChatMessage;
+import com.snoopiechat.backend.model.Contact;
+import com.snoopiechat.backend.model.Users;
+import com.snoopiechat.backend.repository.ContactRepo;
+import com.snoopiechat.backend.repository.UserRepo;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * The contact list has to come from a single statement, however many contacts
+ * the user has
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ContactServiceQueryCountTest {
+    private static final int CONTACTS = 5;
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private ChatMessageService chatMessageService;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private ContactRepo contactRepo;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        Path dir = Files.createTempDirectory("contact-query-count");
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + dir.resolve("test.db"));
+    }
+
+    @Test
+    void contactListIsOneQuery() {
+        Users owner = user("owner");
+        for (int i = 0; i < CONTACTS; i++) {
+            Contact contact = new Contact();
+            contact.setUser(owner);
+            contact.setContact(user("contact" + i));
+            contactRepo.save(contact);
+        }
+
+        Users writer = userRepo.findByUsername("contact0");
+        for (String text : List.of("first", "second")) {
+            chatMessageService.saveOnce(ChatMessage.builder()
+                .senderId(writer.getId())
+                .recipientId(owner.getId())
+                .content(text.getBytes(StandardCharsets.UTF_8))
+                .timestamp(LocalDateTime.now())
+                .build());
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<ContactDTO> contacts = contactService.getUserContacts(owner.getId(), null, null).getContacts();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(CONTACTS, contacts.size());
+
+        Map<String, ContactDTO> byName = contacts.stream()
+            .collect(Collectors.toMap(ContactDTO::getUsername, Function.identity()));
+        assertArrayEquals("second".getBytes(StandardCharsets.UTF_8), byName.get("contact0").getLastMessage());
+        assertEquals(2, byName.get("contact0").getUnread());
+        assertNull(byName.get("contact1").getLastMessage());
+        assertEquals(0, byName.get("contact1").getUnread());
+    }
+
+    private Users user(String name) {
+        Users user = new Users();
+        user.setUsername(name);
+        user.setEmail(name + "@example.com");
+        return userRepo.save(user);
+    }
+}
@@ -0,0 +1,92 @@
+package com.snoopiechat.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.snoopiechat.backend.model.ChatMessage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Expired messages are deleted in batches of chat.retention.batch-size, per
+ * chat TTL first, then the global maximum age
+ */
+@SpringBootTest(properties = {
+    "chat.retention.batch-size=2",
+    "chat.retention.max-age-days=30",
+    // Only the explicit compact() calls below
+    "chat.retention.interval-seconds=3600"
+})
+class MessageRetentionServiceTest {
+    @Autowired
+    private MessageRetentionService messageRetentionService;
+
+    @Autowired
+    private ChatMessageService chatMessageService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        Path dir = Files.createTempDirectory("message-retention");
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + dir.resolve("test.db"));
+        registry.add("chat.cold-storage.dir", () -> dir.resolve("cold").toString());
+        registry.add("chat.offline-queue.spill-dir", () -> dir.resolve("offline").toString());
+    }
+
+    @Test
+    void compactsPerChatTtlAndMaxAge() {
+        LocalDateTime now = LocalDateTime.now();
+
+        // Disappearing after an hour: three expired messages take two batches
+        for (int hours : List.of(5, 4, 3, 0)) {
+            save(1L, 2L, now.minusHours(hours));
+        }
+        messageRetentionService.setChatTtl(1L, 2L, 3600L);
+
+        // No TTL, only the 30 day maximum age applies
+        for (int days : List.of(40, 35, 2)) {
+            save(3L, 4L, now.minusDays(days));
+        }
+
+        double deletedBefore = meterRegistry.counter("chat.retention.deleted.rows").count();
+        messageRetentionService.compact();
+
+        assertEquals(1, messages(1L, 2L).size());
+        List<ChatMessage> kept = messages(3L, 4L);
+        assertEquals(1, kept.size());
+        assertTrue(kept.get(0).getTimestamp().isAfter(now.minusDays(3)));
+        assertEquals(5, meterRegistry.counter("chat.retention.deleted.rows").count() - deletedBefore);
+
+        // Nothing left to do
+        messageRetentionService.compact();
+        assertEquals(5, meterRegistry.counter("chat.retention.deleted.rows").count() - deletedBefore);
+    }
+
+    private void save(Long senderId, Long recipientId, LocalDateTime timestamp) {
+        chatMessageService.saveOnce(ChatMessage.builder()
+            .senderId(senderId)
+            .recipientId(recipientId)
+            .content("message".getBytes(StandardCharsets.UTF_8))
+            .timestamp(timestamp)
+            .build());
+    }
+
+    private List<ChatMessage> messages(Long senderId, Long recipientId) {
+        return chatMessageService.findChatMessages(senderId, recipientId, null, null, 200).getMessages();
+    }
+}
@@ -0,0 +1,169 @@
+package com.snoopiechat.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.snoopiechat.backend.dto.ChatMessagePage;
+import com.snoopiechat.backend.dto.ChatSyncResponse;
+import com.snoopiechat.backend.dto.SyncAckRequest;
+import com.snoopiechat.backend.model.ChatMessage;
+
+/**
+ * History pages and delta syncs run seamlessly across the boundary between cold
+ * segments and the hot table, and expired messages of partly expired segments
+ * stay hidden
+ */
+@SpringBootTest(properties = {
+    "chat.cold-storage.segment-size=3",
+    "chat.cold-storage.block-size=2",
+    // Only the explicit moveColdMessages() calls below
+    "chat.cold-storage.age-days=0",
+    "chat.retention.interval-seconds=3600"
+})
+class MessageTieringServiceTest {
+    private static final int PAGE = 3;
+
+    @Autowired
+    private MessageTieringService messageTieringService;
+
+    @Autowired
+    private ChatMessageService chatMessageService;
+
+    @Autowired
+    private MessageRetentionService messageRetentionService;
+
+    @Autowired
+    private ChatSyncService chatSyncService;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        Path dir = Files.createTempDirectory("message-tiering");
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + dir.resolve("test.db"));
+        registry.add("chat.cold-storage.dir", () -> dir.resolve("cold").toString());
+        registry.add("chat.offline-queue.spill-dir", () -> dir.resolve("offline").toString());
+    }
+
+    @Test
+    void pagesAcrossColdAndHot() {
+        List<Long> ids = saveHistory(1L, 2L);
+        moveToCold();
+
+        // Backwards from the latest page
+        List<Long> backwards = new ArrayList<>();
+        ChatMessagePage page = chatMessageService.findChatMessages(1L, 2L, null, null, PAGE);
+        while (true) {
+            backwards.addAll(0, ids(page));
+            if (page.getOlderCursor() == null) {
+                break;
+            }
+            page = chatMessageService.findChatMessages(1L, 2L, page.getOlderCursor(), null, PAGE);
+        }
+        assertEquals(ids, backwards);
+
+        // Forwards from the oldest message, which is cold
+        List<Long> forwards = new ArrayList<>(List.of(ids.get(0)));
+        Long cursor = ids.get(0);
+        do {
+            page = chatMessageService.findChatMessages(1L, 2L, null, cursor, PAGE);
+            forwards.addAll(ids(page));
+            cursor = page.getNewerCursor();
+        } while (cursor != null);
+        assertEquals(ids, forwards);
+    }
+
+    @Test
+    void partlyExpiredSegmentsAreFiltered() {
+        List<Long> ids = saveHistory(3L, 4L);
+        moveToCold();
+
+        // Expires the cold messages 20 to 16 days old, the second segment only in part
+        messageRetentionService.setChatTtl(3L, 4L, (15L * 24 + 12) * 3600);
+
+        ChatMessagePage page = chatMessageService.findChatMessages(3L, 4L, null, null, 100);
+        assertEquals(ids.subList(5, ids.size()), ids(page));
+        assertNull(page.getOlderCursor());
+
+        // An expired message is no longer a valid cursor
+        Long expired = ids.get(4);
+        ResponseStatusException error = assertThrows(ResponseStatusException.class,
+            () -> chatMessageService.findChatMessages(3L, 4L, expired, null, PAGE));
+        assertEquals(HttpStatus.BAD_REQUEST, error.getStatusCode());
+    }
+
+    @Test
+    void syncContinuesFromColdIntoHot() {
+        List<Long> ids = saveHistory(5L, 6L);
+        moveToCold();
+
+        // A new device, in pages that end in the cold tier, span both and start in the hot one
+        List<Long> synced = new ArrayList<>();
+        ChatSyncResponse response = chatSyncService.sync(5L, "new-device", 0L, PAGE);
+        while (true) {
+            synced.addAll(response.getMessages().stream().map(ChatMessage::getId).toList());
+            if (!response.isHasMore()) {
+                break;
+            }
+            SyncAckRequest ack = new SyncAckRequest();
+            ack.setDeviceId("new-device");
+            ack.setHighWaterMarks(response.getHighWaterMarks());
+            chatSyncService.acknowledge(5L, ack);
+            response = chatSyncService.sync(5L, "new-device", null, PAGE);
+        }
+        assertEquals(ids, synced);
+    }
+
+    /**
+     * Ten messages 20 to 11 days old and three from today, oldest first
+     */
+    private List<Long> saveHistory(Long senderId, Long recipientId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = new ArrayList<>();
+        for (int days = 20; days > 10; days--) {
+            ids.add(save(senderId, recipientId, now.minusDays(days)));
+        }
+        for (int minutes = 3; minutes > 0; minutes--) {
+            ids.add(save(senderId, recipientId, now.minusMinutes(minutes)));
+        }
+        return ids;
+    }
+
+    private void moveToCold() {
+        ReflectionTestUtils.setField(messageTieringService, "ageDays", 7L);
+        try {
+            messageTieringService.moveColdMessages();
+        } finally {
+            ReflectionTestUtils.setField(messageTieringService, "ageDays", 0L);
+        }
+    }
+
+    private Long save(Long senderId, Long recipientId, LocalDateTime timestamp) {
+        return chatMessageService.saveOnce(ChatMessage.builder()
+            .senderId(senderId)
+            .recipientId(recipientId)
+            .content("message".getBytes(StandardCharsets.UTF_8))
+            .timestamp(timestamp)
+            .build()).message().getId();
+    }
+
+    private static List<Long> ids(ChatMessagePage page) {
+        return page.getMessages().stream().map(ChatMessage::getId).toList();
+    }
+}
@@ -0,0 +1,74 @@
+package com.snoopiechat.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.snoopiechat.backend.dto.ChatNotification;
+
+/**
+ * A restarted service continues an offline queue where the previous run
+ * stopped, without repeating or losing notifications
+ */
+class OfflineMessageQueueServiceTest {
+    private static final Long USER = 7L;
+
+    @TempDir
+    Path spillDir;
+
+    @Test
+    void restartResumesAfterLastBatch() throws IOException {
+        OfflineMessageQueueService queue = start();
+        enqueue(queue, 1, 6);
+
+        assertEquals(List.of(1L, 2L), ids(queue.pollBatch(USER, 3)));
+        assertEquals(List.of(3L, 4L), ids(queue.pollBatch(USER, 2)));
+
+        // Crash: nothing is persisted on the way down
+        OfflineMessageQueueService restarted = start();
+        assertEquals(List.of(5L, 6L), ids(restarted.pollBatch(USER, 10)));
+        assertEquals(List.of(), restarted.pollBatch(USER, 10));
+        assertFalse(restarted.hasQueued(USER));
+    }
+
+    @Test
+    void shutdownKeepsMemoryInFrontOfSpillFile() throws IOException {
+        OfflineMessageQueueService queue = start();
+        enqueue(queue, 1, 4);
+        assertEquals(List.of(1L), ids(queue.pollBatch(USER, 1)));
+        queue.persist();
+
+        OfflineMessageQueueService restarted = start();
+        enqueue(restarted, 5, 5);
+        assertEquals(List.of(2L, 3L, 4L, 5L), ids(restarted.pollBatch(USER, 10)));
+        assertEquals(List.of(), restarted.pollBatch(USER, 10));
+    }
+
+    private OfflineMessageQueueService start() throws IOException {
+        OfflineMessageQueueService queue = new OfflineMessageQueueService();
+        ReflectionTestUtils.setField(queue, "objectMapper", JsonMapper.builder().findAndAddModules().build());
+        ReflectionTestUtils.setField(queue, "memoryCapacity", 2);
+        ReflectionTestUtils.setField(queue, "maxSpilled", 100);
+        ReflectionTestUtils.setField(queue, "spillDirectory", spillDir.toString());
+        queue.init();
+        return queue;
+    }
+
+    private static void enqueue(OfflineMessageQueueService queue, long from, long to) {
+        for (long id = from; id <= to; id++) {
+            queue.enqueue(USER, ChatNotification.builder().id(id).chatId("1_7").seq(id).build());
+        }
+    }
+
+    private static List<Long> ids(List<ChatNotification> batch) {
+        return batch.stream().map(ChatNotification::getId).toList();
+    }
+}
@@ -0,0 +1,88 @@
+package com.snoopiechat.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.snoopiechat.backend.cluster.ClusterBus;
+import com.snoopiechat.backend.cluster.ClusterUserRegistry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Devices of the same users connect and disconnect concurrently: every first
+ * session is matched by exactly one last one, on any lock stripe
+ */
+class UserSessionRegistryTest {
+    private static final int USERS = 6;
+    private static final int THREADS = 12;
+    private static final int ROUNDS = 2000;
+
+    @Test
+    void concurrentConnectsAndDisconnects() throws Exception {
+        ClusterUserRegistry clusterUsers = mock(ClusterUserRegistry.class);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UserSessionRegistry registry = new UserSessionRegistry(mock(SimpMessagingTemplate.class), meterRegistry,
+                mock(ClusterBus.class), clusterUsers);
+        // Fewer stripes than users, some of them share a lock
+        ReflectionTestUtils.setField(registry, "lockStripes", 4);
+        ReflectionTestUtils.invokeMethod(registry, "init");
+
+        AtomicIntegerArray firsts = new AtomicIntegerArray(USERS);
+        AtomicIntegerArray lasts = new AtomicIntegerArray(USERS);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int device = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        long user = (device + round) % USERS;
+                        String session = "device" + device + "-" + round;
+                        if (registry.register(user, session, null)) {
+                            firsts.incrementAndGet((int) user);
+                        }
+                        if (registry.unregister(session) != null) {
+                            lasts.incrementAndGet((int) user);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (long user = 0; user < USERS; user++) {
+            int connects = firsts.get((int) user);
+            assertEquals(connects, lasts.get((int) user));
+            verify(clusterUsers, times(connects)).localUserConnected(user);
+            verify(clusterUsers, times(connects)).localUserDisconnected(user);
+            assertFalse(registry.isConnectedLocally(user));
+            assertEquals(Set.of(), registry.sessionsOf(user));
+        }
+        assertEquals(0, meterRegistry.get("chat.sessions.active").gauge().value());
+        assertEquals(0, meterRegistry.get("chat.sessions.users").gauge().value());
+    }
+}
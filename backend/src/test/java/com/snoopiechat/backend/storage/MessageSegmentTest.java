@@ -0,0 +1,91 @@
+package com.snoopiechat.backend.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.snoopiechat.backend.model.ChatMessage;
+
+/**
+ * Messages written to a segment read back unchanged, block by block
+ */
+class MessageSegmentTest {
+    private static final String CHAT = "1_2";
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 12, 0, 0, 123_456_789);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTrip() throws IOException {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 1; i <= 7; i++) {
+            messages.add(ChatMessage.builder()
+                .id(100L + i)
+                .chatId(CHAT)
+                // Legacy rows have neither a sequence number nor a client id
+                .seq(i % 3 == 0 ? null : (long) i)
+                .senderId(i % 2 == 0 ? 1L : 2L)
+                .recipientId(i % 2 == 0 ? 2L : 1L)
+                .timestamp(START.plusSeconds(i))
+                .content(("message " + i).getBytes(StandardCharsets.UTF_8))
+                .clientMessageId(i % 3 == 0 ? null : "client-" + i)
+                .build());
+        }
+
+        Path file = dir.resolve("segment");
+        MessageSegment.write(file, messages, 3);
+        MessageSegment segment = MessageSegment.open(CHAT, file);
+
+        assertEquals(3, segment.blocks().size());
+        assertEquals(7, segment.messageCount());
+        assertEquals(MessageKey.of(messages.get(0)), segment.first());
+        assertEquals(MessageKey.of(messages.get(6)), segment.last());
+
+        MessageSegment.Block middle = segment.blocks().get(1);
+        assertEquals(104L, middle.minId());
+        assertEquals(106L, middle.maxId());
+        assertEquals(3, middle.count());
+
+        assertMessages(messages, readAll(segment));
+
+        // Evicted from the cache while a reader still holds it
+        segment.close();
+        assertMessages(messages, readAll(segment));
+    }
+
+    private static List<ChatMessage> readAll(MessageSegment segment) {
+        List<ChatMessage> read = new ArrayList<>();
+        for (MessageSegment.Block block : segment.blocks()) {
+            read.addAll(segment.readBlock(block));
+        }
+        return read;
+    }
+
+    private static void assertMessages(List<ChatMessage> expected, List<ChatMessage> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            ChatMessage want = expected.get(i);
+            ChatMessage got = actual.get(i);
+            assertEquals(want.getId(), got.getId());
+            assertEquals(CHAT, got.getChatId());
+            assertEquals(want.getSeq(), got.getSeq());
+            assertEquals(want.getSenderId(), got.getSenderId());
+            assertEquals(want.getRecipientId(), got.getRecipientId());
+            assertEquals(want.getTimestamp(), got.getTimestamp());
+            assertArrayEquals(want.getContent(), got.getContent());
+            assertEquals(want.getClientMessageId(), got.getClientMessageId());
+        }
+        assertNull(actual.get(2).getSeq());
+    }
+}
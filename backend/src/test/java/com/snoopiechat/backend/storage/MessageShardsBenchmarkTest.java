@@ -0,0 +1,111 @@
+package com.snoopiechat.backend.storage;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.snoopiechat.backend.BackendApplication;
+import com.snoopiechat.backend.model.ChatMessage;
+import com.snoopiechat.backend.service.ChatMessageService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stores messages from concurrent writers into one shard and into several and
+ * reports the messages per second of each, to see how far writes scale with
+ * the number of SQLite files
+ */
+@Tag("benchmark")
+@Slf4j
+class MessageShardsBenchmarkTest {
+    private static final int CHATS = 64;
+    private static final int WRITERS = 8;
+    private static final long SECONDS = 10;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writeScaling() throws Exception {
+        // The first run also warms up the JIT, it is repeated afterwards
+        run(1);
+        long one = run(1);
+        long four = run(4);
+        long eight = run(8);
+
+        log.info("{} writers over {} chats, {} s each:", WRITERS, CHATS, SECONDS);
+        log.info("  1 shard:  {} messages/s", one / SECONDS);
+        log.info("  4 shards: {} messages/s", four / SECONDS);
+        log.info("  8 shards: {} messages/s", eight / SECONDS);
+        assertTrue(one > 0 && four > 0 && eight > 0);
+    }
+
+    private long run(int shards) throws Exception {
+        Path runDir = Files.createDirectory(dir.resolve(shards + "-" + System.nanoTime()));
+        // As arguments, default properties would lose against application.properties
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BackendApplication.class)
+                .run(
+                    "--server.port=0",
+                    "--spring.datasource.url=jdbc:sqlite:" + runDir.resolve("main.db"),
+                    "--chat.storage.shards=" + shards,
+                    "--chat.storage.shard-url=jdbc:sqlite:" + runDir.resolve("shard-%d.db"),
+                    "--chat.cold-storage.dir=" + runDir.resolve("cold"),
+                    "--chat.offline-queue.spill-dir=" + runDir.resolve("offline"),
+                    "--logging.level.root=INFO",
+                    "--logging.level.org.springframework.security=WARN",
+                    "--spring.jpa.show-sql=false")) {
+            ChatMessageService service = context.getBean(ChatMessageService.class);
+            // Creating the chat rooms is a write to the main database, keep it out of the measurement
+            for (long chat = 0; chat < CHATS; chat++) {
+                write(service, chat);
+            }
+
+            AtomicLong written = new AtomicLong();
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+            ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < WRITERS; i++) {
+                    futures.add(executor.submit(() -> {
+                        while (System.nanoTime() < end) {
+                            write(service, ThreadLocalRandom.current().nextLong(CHATS));
+                            written.incrementAndGet();
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            return written.get();
+        }
+    }
+
+    private static void write(ChatMessageService service, long chat) {
+        service.save(ChatMessage.builder()
+            .senderId(2 * chat)
+            .recipientId(2 * chat + 1)
+            .content("benchmark message".getBytes(StandardCharsets.UTF_8))
+            .timestamp(LocalDateTime.now())
+            .build());
+    }
+}
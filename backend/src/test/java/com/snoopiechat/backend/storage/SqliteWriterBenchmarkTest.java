@@ -0,0 +1,140 @@
+package com.snoopiechat.backend.storage;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.snoopiechat.backend.model.ChatMessage;
+import com.snoopiechat.backend.service.ChatMessageService;
+import com.snoopiechat.backend.service.ConversationService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs readers paging conversations next to writers storing messages and
+ * marking chats read, and reports the operations per second of both sides and
+ * the time writes waited for the writer thread
+ */
+@Tag("benchmark")
+@Slf4j
+@SpringBootTest
+class SqliteWriterBenchmarkTest {
+    private static final int CHATS = 20;
+    private static final long SECONDS = 10;
+
+    @Autowired
+    private ChatMessageService chatMessageService;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) throws IOException {
+        Path dir = Files.createTempDirectory("sqlite-writer-benchmark");
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + dir.resolve("test.db"));
+        registry.add("chat.cold-storage.dir", () -> dir.resolve("cold").toString());
+        registry.add("chat.offline-queue.spill-dir", () -> dir.resolve("offline").toString());
+    }
+
+    @Test
+    void mixedReadWriteThroughput() throws Exception {
+        // Every chat has a page to read before the clock starts
+        for (long chat = 0; chat < CHATS; chat++) {
+            for (int i = 0; i < ChatMessageService.DEFAULT_PAGE_SIZE; i++) {
+                write(chat);
+            }
+        }
+
+        Result writesOnly = run(0, 8);
+        Result readsOnly = run(8, 0);
+        Result mixed = run(8, 8);
+
+        log.info("Mixed load over {} s, {} chats:", SECONDS, CHATS);
+        for (Result result : List.of(writesOnly, readsOnly, mixed)) {
+            log.info("  {} readers, {} writers: {} reads/s, {} writes/s, writer wait mean {} ms",
+                    result.readers, result.writers,
+                    result.reads / SECONDS, result.writes / SECONDS,
+                    String.format("%.2f", result.waitMeanMs));
+        }
+        assertTrue(mixed.reads > 0 && mixed.writes > 0);
+    }
+
+    private Result run(int readers, int writers) throws Exception {
+        Timer wait = meterRegistry.timer("sqlite.writer.wait", "shard", "0");
+        long waitCount = wait.count();
+        double waitTotal = wait.totalTime(TimeUnit.MILLISECONDS);
+
+        AtomicLong reads = new AtomicLong();
+        AtomicLong writes = new AtomicLong();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+        ExecutorService executor = Executors.newFixedThreadPool(readers + writers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < readers; i++) {
+                futures.add(executor.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        long chat = ThreadLocalRandom.current().nextLong(CHATS);
+                        chatMessageService.findChatMessages(2 * chat, 2 * chat + 1, null, null, null);
+                        reads.incrementAndGet();
+                    }
+                }));
+            }
+            for (int i = 0; i < writers; i++) {
+                futures.add(executor.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        long chat = ThreadLocalRandom.current().nextLong(CHATS);
+                        // Storing and reading a message, as a delivered message does
+                        ChatMessage saved = write(chat);
+                        conversationService.markRead(2 * chat + 1, 2 * chat, saved.getSeq());
+                        writes.addAndGet(2);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long waited = wait.count() - waitCount;
+        double waitMeanMs = waited == 0 ? 0 : (wait.totalTime(TimeUnit.MILLISECONDS) - waitTotal) / waited;
+        return new Result(readers, writers, reads.get(), writes.get(), waitMeanMs);
+    }
+
+    private ChatMessage write(long chat) {
+        return chatMessageService.save(ChatMessage.builder()
+            .senderId(2 * chat)
+            .recipientId(2 * chat + 1)
+            .content("benchmark message".getBytes(StandardCharsets.UTF_8))
+            .timestamp(LocalDateTime.now())
+            .build());
+    }
+
+    private record Result(int readers, int writers, long reads, long writes, double waitMeanMs) {
+    }
+}
@@ -22,21 +22,67 @@ import { DUMMY_BASE_URL, assertParamExists, setApiKeyToObject, setBasicAuthToObj
 // @ts-ignore
 import { BASE_PATH, COLLECTION_FORMATS, type RequestArgs, BaseAPI, RequiredError, operationServerMap } from '../base';
 // @ts-ignore
-import type { ChatMessage } from '../models';
+import type { ChatMessagePage } from '../models';
+// @ts-ignore
+import type { ChatSyncResponse } from '../models';
+// @ts-ignore
+import type { ReadAckRequest } from '../models';
+// @ts-ignore
+import type { RetentionRequest } from '../models';
+// @ts-ignore
+import type { SyncAckRequest } from '../models';
 /**
  * ChatControllerApi - axios parameter creator
  * @export
  */
 export const ChatControllerApiAxiosParamCreator = function (configuration?: Configuration) {
     return {
+        /**
+         * 
+         * @param {SyncAckRequest} syncAckRequest 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        acknowledgeSync: async (syncAckRequest: SyncAckRequest, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
+            // verify required parameter 'syncAckRequest' is not null or undefined
+            assertParamExists('acknowledgeSync', 'syncAckRequest', syncAckRequest)
+            const localVarPath = `/api/chat/sync/ack`;
+            // use dummy base URL string because the URL constructor only accepts absolute URLs.
+            const localVarUrlObj = new URL(localVarPath, DUMMY_BASE_URL);
+            let baseOptions;
+            if (configuration) {
+                baseOptions = configuration.baseOptions;
+            }
+
+            const localVarRequestOptions = { method: 'POST', ...baseOptions, ...options};
+            const localVarHeaderParameter = {} as any;
+            const localVarQueryParameter = {} as any;
+
+
+    
+            localVarHeaderParameter['Content-Type'] = 'application/json';
+
+            setSearchParams(localVarUrlObj, localVarQueryParameter);
+            let headersFromBaseOptions = baseOptions && baseOptions.headers ? baseOptions.headers : {};
+            localVarRequestOptions.headers = {...localVarHeaderParameter, ...headersFromBaseOptions, ...options.headers};
+            localVarRequestOptions.data = serializeDataIfNeeded(syncAckRequest, localVarRequestOptions, configuration)
+
+            return {
+                url: toPathString(localVarUrlObj),
+                options: localVarRequestOptions,
+            };
+        },
         /**
          * 
          * @param {number} senderId 
          * @param {number} recipientId 
+         * @param {number} [before] 
+         * @param {number} [after] 
+         * @param {number} [limit] 
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        findChatMessages: async (senderId: number, recipientId: number, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
+        findChatMessages: async (senderId: number, recipientId: number, before?: number, after?: number, limit?: number, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
             // verify required parameter 'senderId' is not null or undefined
             assertParamExists('findChatMessages', 'senderId', senderId)
             // verify required parameter 'recipientId' is not null or undefined
@@ -55,6 +101,142 @@ export const ChatControllerApiAxiosParamCreator = function (configuration?: Conf
             const localVarHeaderParameter = {} as any;
             const localVarQueryParameter = {} as any;
 
+            if (before !== undefined) {
+                localVarQueryParameter['before'] = before;
+            }
+
+            if (after !== undefined) {
+                localVarQueryParameter['after'] = after;
+            }
+
+            if (limit !== undefined) {
+                localVarQueryParameter['limit'] = limit;
+            }
+
+
+    
+            setSearchParams(localVarUrlObj, localVarQueryParameter);
+            let headersFromBaseOptions = baseOptions && baseOptions.headers ? baseOptions.headers : {};
+            localVarRequestOptions.headers = {...localVarHeaderParameter, ...headersFromBaseOptions, ...options.headers};
+
+            return {
+                url: toPathString(localVarUrlObj),
+                options: localVarRequestOptions,
+            };
+        },
+        /**
+         * 
+         * @param {number} peerId 
+         * @param {ReadAckRequest} readAckRequest 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        markRead: async (peerId: number, readAckRequest: ReadAckRequest, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
+            // verify required parameter 'peerId' is not null or undefined
+            assertParamExists('markRead', 'peerId', peerId)
+            // verify required parameter 'readAckRequest' is not null or undefined
+            assertParamExists('markRead', 'readAckRequest', readAckRequest)
+            const localVarPath = `/api/chat/chats/{peerId}/read`
+                .replace(`{${"peerId"}}`, encodeURIComponent(String(peerId)));
+            // use dummy base URL string because the URL constructor only accepts absolute URLs.
+            const localVarUrlObj = new URL(localVarPath, DUMMY_BASE_URL);
+            let baseOptions;
+            if (configuration) {
+                baseOptions = configuration.baseOptions;
+            }
+
+            const localVarRequestOptions = { method: 'PUT', ...baseOptions, ...options};
+            const localVarHeaderParameter = {} as any;
+            const localVarQueryParameter = {} as any;
+
+
+    
+            localVarHeaderParameter['Content-Type'] = 'application/json';
+
+            setSearchParams(localVarUrlObj, localVarQueryParameter);
+            let headersFromBaseOptions = baseOptions && baseOptions.headers ? baseOptions.headers : {};
+            localVarRequestOptions.headers = {...localVarHeaderParameter, ...headersFromBaseOptions, ...options.headers};
+            localVarRequestOptions.data = serializeDataIfNeeded(readAckRequest, localVarRequestOptions, configuration)
+
+            return {
+                url: toPathString(localVarUrlObj),
+                options: localVarRequestOptions,
+            };
+        },
+        /**
+         * 
+         * @param {number} peerId 
+         * @param {RetentionRequest} retentionRequest 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        setRetention: async (peerId: number, retentionRequest: RetentionRequest, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
+            // verify required parameter 'peerId' is not null or undefined
+            assertParamExists('setRetention', 'peerId', peerId)
+            // verify required parameter 'retentionRequest' is not null or undefined
+            assertParamExists('setRetention', 'retentionRequest', retentionRequest)
+            const localVarPath = `/api/chat/chats/{peerId}/retention`
+                .replace(`{${"peerId"}}`, encodeURIComponent(String(peerId)));
+            // use dummy base URL string because the URL constructor only accepts absolute URLs.
+            const localVarUrlObj = new URL(localVarPath, DUMMY_BASE_URL);
+            let baseOptions;
+            if (configuration) {
+                baseOptions = configuration.baseOptions;
+            }
+
+            const localVarRequestOptions = { method: 'PUT', ...baseOptions, ...options};
+            const localVarHeaderParameter = {} as any;
+            const localVarQueryParameter = {} as any;
+
+
+    
+            localVarHeaderParameter['Content-Type'] = 'application/json';
+
+            setSearchParams(localVarUrlObj, localVarQueryParameter);
+            let headersFromBaseOptions = baseOptions && baseOptions.headers ? baseOptions.headers : {};
+            localVarRequestOptions.headers = {...localVarHeaderParameter, ...headersFromBaseOptions, ...options.headers};
+            localVarRequestOptions.data = serializeDataIfNeeded(retentionRequest, localVarRequestOptions, configuration)
+
+            return {
+                url: toPathString(localVarUrlObj),
+                options: localVarRequestOptions,
+            };
+        },
+        /**
+         * 
+         * @param {string} deviceId 
+         * @param {number} [since] 
+         * @param {number} [limit] 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        sync: async (deviceId: string, since?: number, limit?: number, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
+            // verify required parameter 'deviceId' is not null or undefined
+            assertParamExists('sync', 'deviceId', deviceId)
+            const localVarPath = `/api/chat/sync`;
+            // use dummy base URL string because the URL constructor only accepts absolute URLs.
+            const localVarUrlObj = new URL(localVarPath, DUMMY_BASE_URL);
+            let baseOptions;
+            if (configuration) {
+                baseOptions = configuration.baseOptions;
+            }
+
+            const localVarRequestOptions = { method: 'GET', ...baseOptions, ...options};
+            const localVarHeaderParameter = {} as any;
+            const localVarQueryParameter = {} as any;
+
+            if (deviceId !== undefined) {
+                localVarQueryParameter['deviceId'] = deviceId;
+            }
+
+            if (since !== undefined) {
+                localVarQueryParameter['since'] = since;
+            }
+
+            if (limit !== undefined) {
+                localVarQueryParameter['limit'] = limit;
+            }
+
 
     
             setSearchParams(localVarUrlObj, localVarQueryParameter);
@@ -76,19 +258,74 @@ export const ChatControllerApiAxiosParamCreator = function (configuration?: Conf
 export const ChatControllerApiFp = function(configuration?: Configuration) {
     const localVarAxiosParamCreator = ChatControllerApiAxiosParamCreator(configuration)
     return {
+        /**
+         * 
+         * @param {SyncAckRequest} syncAckRequest 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        async acknowledgeSync(syncAckRequest: SyncAckRequest, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<void>> {
+            const localVarAxiosArgs = await localVarAxiosParamCreator.acknowledgeSync(syncAckRequest, options);
+            const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
+            const localVarOperationServerBasePath = operationServerMap['ChatControllerApi.acknowledgeSync']?.[localVarOperationServerIndex]?.url;
+            return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
+        },
         /**
          * 
          * @param {number} senderId 
          * @param {number} recipientId 
+         * @param {number} [before] 
+         * @param {number} [after] 
+         * @param {number} [limit] 
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        async findChatMessages(senderId: number, recipientId: number, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<Array<ChatMessage>>> {
-            const localVarAxiosArgs = await localVarAxiosParamCreator.findChatMessages(senderId, recipientId, options);
+        async findChatMessages(senderId: number, recipientId: number, before?: number, after?: number, limit?: number, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<ChatMessagePage>> {
+            const localVarAxiosArgs = await localVarAxiosParamCreator.findChatMessages(senderId, recipientId, before, after, limit, options);
             const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
             const localVarOperationServerBasePath = operationServerMap['ChatControllerApi.findChatMessages']?.[localVarOperationServerIndex]?.url;
             return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
         },
+        /**
+         * 
+         * @param {number} peerId 
+         * @param {ReadAckRequest} readAckRequest 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        async markRead(peerId: number, readAckRequest: ReadAckRequest, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<void>> {
+            const localVarAxiosArgs = await localVarAxiosParamCreator.markRead(peerId, readAckRequest, options);
+            const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
+            const localVarOperationServerBasePath = operationServerMap['ChatControllerApi.markRead']?.[localVarOperationServerIndex]?.url;
+            return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
+        },
+        /**
+         * 
+         * @param {number} peerId 
+         * @param {RetentionRequest} retentionRequest 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        async setRetention(peerId: number, retentionRequest: RetentionRequest, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<void>> {
+            const localVarAxiosArgs = await localVarAxiosParamCreator.setRetention(peerId, retentionRequest, options);
+            const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
+            const localVarOperationServerBasePath = operationServerMap['ChatControllerApi.setRetention']?.[localVarOperationServerIndex]?.url;
+            return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
+        },
+        /**
+         * 
+         * @param {string} deviceId 
+         * @param {number} [since] 
+         * @param {number} [limit] 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        async sync(deviceId: string, since?: number, limit?: number, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<ChatSyncResponse>> {
+            const localVarAxiosArgs = await localVarAxiosParamCreator.sync(deviceId, since, limit, options);
+            const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
+            const localVarOperationServerBasePath = operationServerMap['ChatControllerApi.sync']?.[localVarOperationServerIndex]?.url;
+            return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
+        },
     }
 };
 
@@ -99,15 +336,58 @@ export const ChatControllerApiFp = function(configuration?: Configuration) {
 export const ChatControllerApiFactory = function (configuration?: Configuration, basePath?: string, axios?: AxiosInstance) {
     const localVarFp = ChatControllerApiFp(configuration)
     return {
+        /**
+         * 
+         * @param {SyncAckRequest} syncAckRequest 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        acknowledgeSync(syncAckRequest: SyncAckRequest, options?: RawAxiosRequestConfig): AxiosPromise<void> {
+            return localVarFp.acknowledgeSync(syncAckRequest, options).then((request) => request(axios, basePath));
+        },
         /**
          * 
          * @param {number} senderId 
          * @param {number} recipientId 
+         * @param {number} [before] 
+         * @param {number} [after] 
+         * @param {number} [limit] 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        findChatMessages(senderId: number, recipientId: number, before?: number, after?: number, limit?: number, options?: RawAxiosRequestConfig): AxiosPromise<ChatMessagePage> {
+            return localVarFp.findChatMessages(senderId, recipientId, before, after, limit, options).then((request) => request(axios, basePath));
+        },
+        /**
+         * 
+         * @param {number} peerId 
+         * @param {ReadAckRequest} readAckRequest 
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        findChatMessages(senderId: number, recipientId: number, options?: RawAxiosRequestConfig): AxiosPromise<Array<ChatMessage>> {
-            return localVarFp.findChatMessages(senderId, recipientId, options).then((request) => request(axios, basePath));
+        markRead(peerId: number, readAckRequest: ReadAckRequest, options?: RawAxiosRequestConfig): AxiosPromise<void> {
+            return localVarFp.markRead(peerId, readAckRequest, options).then((request) => request(axios, basePath));
+        },
+        /**
+         * 
+         * @param {number} peerId 
+         * @param {RetentionRequest} retentionRequest 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        setRetention(peerId: number, retentionRequest: RetentionRequest, options?: RawAxiosRequestConfig): AxiosPromise<void> {
+            return localVarFp.setRetention(peerId, retentionRequest, options).then((request) => request(axios, basePath));
+        },
+        /**
+         * 
+         * @param {string} deviceId 
+         * @param {number} [since] 
+         * @param {number} [limit] 
+         * @param {*} [options] Override http request option.
+         * @throws {RequiredError}
+         */
+        sync(deviceId: string, since?: number, limit?: number, options?: RawAxiosRequestConfig): AxiosPromise<ChatSyncResponse> {
+            return localVarFp.sync(deviceId, since, limit, options).then((request) => request(axios, basePath));
         },
     };
 };
@@ -119,16 +399,67 @@ export const ChatControllerApiFactory = function (configuration?: Configuration,
  * @extends {BaseAPI}
  */
 export class ChatControllerApi extends BaseAPI {
+    /**
+     * 
+     * @param {SyncAckRequest} syncAckRequest 
+     * @param {*} [options] Override http request option.
+     * @throws {RequiredError}
+     * @memberof ChatControllerApi
+     */
+    public acknowledgeSync(syncAckRequest: SyncAckRequest, options?: RawAxiosRequestConfig) {
+        return ChatControllerApiFp(this.configuration).acknowledgeSync(syncAckRequest, options).then((request) => request(this.axios, this.basePath));
+    }
+
     /**
      * 
      * @param {number} senderId 
      * @param {number} recipientId 
+     * @param {number} [before] 
+     * @param {number} [after] 
+     * @param {number} [limit] 
+     * @param {*} [options] Override http request option.
+     * @throws {RequiredError}
+     * @memberof ChatControllerApi
+     */
+    public findChatMessages(senderId: number, recipientId: number, before?: number, after?: number, limit?: number, options?: RawAxiosRequestConfig) {
+        return ChatControllerApiFp(this.configuration).findChatMessages(senderId, recipientId, before, after, limit, options).then((request) => request(this.axios, this.basePath));
+    }
+
+    /**
+     * 
+     * @param {number} peerId 
+     * @param {ReadAckRequest} readAckRequest 
+     * @param {*} [options] Override http request option.
+     * @throws {RequiredError}
+     * @memberof ChatControllerApi
+     */
+    public markRead(peerId: number, readAckRequest: ReadAckRequest, options?: RawAxiosRequestConfig) {
+        return ChatControllerApiFp(this.configuration).markRead(peerId, readAckRequest, options).then((request) => request(this.axios, this.basePath));
+    }
+
+    /**
+     * 
+     * @param {number} peerId 
+     * @param {RetentionRequest} retentionRequest 
+     * @param {*} [options] Override http request option.
+     * @throws {RequiredError}
+     * @memberof ChatControllerApi
+     */
+    public setRetention(peerId: number, retentionRequest: RetentionRequest, options?: RawAxiosRequestConfig) {
+        return ChatControllerApiFp(this.configuration).setRetention(peerId, retentionRequest, options).then((request) => request(this.axios, this.basePath));
+    }
+
+    /**
+     * 
+     * @param {string} deviceId 
+     * @param {number} [since] 
+     * @param {number} [limit] 
      * @param {*} [options] Override http request option.
      * @throws {RequiredError}
      * @memberof ChatControllerApi
      */
-    public findChatMessages(senderId: number, recipientId: number, options?: RawAxiosRequestConfig) {
-        return ChatControllerApiFp(this.configuration).findChatMessages(senderId, recipientId, options).then((request) => request(this.axios, this.basePath));
+    public sync(deviceId: string, since?: number, limit?: number, options?: RawAxiosRequestConfig) {
+        return ChatControllerApiFp(this.configuration).sync(deviceId, since, limit, options).then((request) => request(this.axios, this.basePath));
     }
 }
 
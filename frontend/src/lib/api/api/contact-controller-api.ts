@@ -28,9 +28,11 @@ import type { AddContactRequest } from '../models';
 // @ts-ignore
 import type { ContactDTO } from '../models';
 // @ts-ignore
-import type { FirendRequestDTO } from '../models';
+import type { ContactPage } from '../models';
 // @ts-ignore
-import type { Users } from '../models';
+import type { FriendRequestPage } from '../models';
+// @ts-ignore
+import type { UserSummary } from '../models';
 /**
  * ContactControllerApi - axios parameter creator
  * @export
@@ -142,10 +144,12 @@ export const ContactControllerApiAxiosParamCreator = function (configuration?: C
         },
         /**
          * 
+         * @param {string} [after] 
+         * @param {number} [limit] 
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        getContacts: async (options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
+        getContacts: async (after?: string, limit?: number, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
             const localVarPath = `/contacts`;
             // use dummy base URL string because the URL constructor only accepts absolute URLs.
             const localVarUrlObj = new URL(localVarPath, DUMMY_BASE_URL);
@@ -158,6 +162,14 @@ export const ContactControllerApiAxiosParamCreator = function (configuration?: C
             const localVarHeaderParameter = {} as any;
             const localVarQueryParameter = {} as any;
 
+            if (after !== undefined) {
+                localVarQueryParameter['after'] = after;
+            }
+
+            if (limit !== undefined) {
+                localVarQueryParameter['limit'] = limit;
+            }
+
 
     
             setSearchParams(localVarUrlObj, localVarQueryParameter);
@@ -171,10 +183,12 @@ export const ContactControllerApiAxiosParamCreator = function (configuration?: C
         },
         /**
          * 
+         * @param {number} [before] 
+         * @param {number} [limit] 
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        getPendingFriendRequests: async (options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
+        getPendingFriendRequests: async (before?: number, limit?: number, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
             const localVarPath = `/contacts/friend-requests/pending`;
             // use dummy base URL string because the URL constructor only accepts absolute URLs.
             const localVarUrlObj = new URL(localVarPath, DUMMY_BASE_URL);
@@ -187,6 +201,14 @@ export const ContactControllerApiAxiosParamCreator = function (configuration?: C
             const localVarHeaderParameter = {} as any;
             const localVarQueryParameter = {} as any;
 
+            if (before !== undefined) {
+                localVarQueryParameter['before'] = before;
+            }
+
+            if (limit !== undefined) {
+                localVarQueryParameter['limit'] = limit;
+            }
+
 
     
             setSearchParams(localVarUrlObj, localVarQueryParameter);
@@ -263,10 +285,11 @@ export const ContactControllerApiAxiosParamCreator = function (configuration?: C
         /**
          * 
          * @param {string} query 
+         * @param {number} [limit] 
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        searchUsers: async (query: string, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
+        searchUsers: async (query: string, limit?: number, options: RawAxiosRequestConfig = {}): Promise<RequestArgs> => {
             // verify required parameter 'query' is not null or undefined
             assertParamExists('searchUsers', 'query', query)
             const localVarPath = `/contacts/search`;
@@ -285,6 +308,10 @@ export const ContactControllerApiAxiosParamCreator = function (configuration?: C
                 localVarQueryParameter['query'] = query;
             }
 
+            if (limit !== undefined) {
+                localVarQueryParameter['limit'] = limit;
+            }
+
 
     
             setSearchParams(localVarUrlObj, localVarQueryParameter);
@@ -377,22 +404,26 @@ export const ContactControllerApiFp = function(configuration?: Configuration) {
         },
         /**
          * 
+         * @param {string} [after] 
+         * @param {number} [limit] 
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        async getContacts(options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<Array<ContactDTO>>> {
-            const localVarAxiosArgs = await localVarAxiosParamCreator.getContacts(options);
+        async getContacts(after?: string, limit?: number, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<ContactPage>> {
+            const localVarAxiosArgs = await localVarAxiosParamCreator.getContacts(after, limit, options);
             const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
             const localVarOperationServerBasePath = operationServerMap['ContactControllerApi.getContacts']?.[localVarOperationServerIndex]?.url;
             return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
         },
         /**
          * 
+         * @param {number} [before] 
+         * @param {number} [limit] 
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        async getPendingFriendRequests(options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<Array<FirendRequestDTO>>> {
-            const localVarAxiosArgs = await localVarAxiosParamCreator.getPendingFriendRequests(options);
+        async getPendingFriendRequests(before?: number, limit?: number, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<FriendRequestPage>> {
+            const localVarAxiosArgs = await localVarAxiosParamCreator.getPendingFriendRequests(before, limit, options);
             const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
             const localVarOperationServerBasePath = operationServerMap['ContactControllerApi.getPendingFriendRequests']?.[localVarOperationServerIndex]?.url;
             return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
@@ -423,11 +454,12 @@ export const ContactControllerApiFp = function(configuration?: Configuration) {
         /**
          * 
          * @param {string} query 
+         * @param {number} [limit] 
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        async searchUsers(query: string, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<Array<Users>>> {
-            const localVarAxiosArgs = await localVarAxiosParamCreator.searchUsers(query, options);
+        async searchUsers(query: string, limit?: number, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<Array<UserSummary>>> {
+            const localVarAxiosArgs = await localVarAxiosParamCreator.searchUsers(query, limit, options);
             const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
             const localVarOperationServerBasePath = operationServerMap['ContactControllerApi.searchUsers']?.[localVarOperationServerIndex]?.url;
             return (axios, basePath) => createRequestFunction(localVarAxiosArgs, globalAxios, BASE_PATH, configuration)(axios, localVarOperationServerBasePath || basePath);
@@ -483,19 +515,23 @@ export const ContactControllerApiFactory = function (configuration?: Configurati
         },
         /**
          * 
+         * @param {string} [after] 
+         * @param {number} [limit] 
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        getContacts(options?: RawAxiosRequestConfig): AxiosPromise<Array<ContactDTO>> {
-            return localVarFp.getContacts(options).then((request) => request(axios, basePath));
+        getContacts(after?: string, limit?: number, options?: RawAxiosRequestConfig): AxiosPromise<ContactPage> {
+            return localVarFp.getContacts(after, limit, options).then((request) => request(axios, basePath));
         },
         /**
          * 
+         * @param {number} [before] 
+         * @param {number} [limit] 
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        getPendingFriendRequests(options?: RawAxiosRequestConfig): AxiosPromise<Array<FirendRequestDTO>> {
-            return localVarFp.getPendingFriendRequests(options).then((request) => request(axios, basePath));
+        getPendingFriendRequests(before?: number, limit?: number, options?: RawAxiosRequestConfig): AxiosPromise<FriendRequestPage> {
+            return localVarFp.getPendingFriendRequests(before, limit, options).then((request) => request(axios, basePath));
         },
         /**
          * 
@@ -517,11 +553,12 @@ export const ContactControllerApiFactory = function (configuration?: Configurati
         /**
          * 
          * @param {string} query 
+         * @param {number} [limit] 
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        searchUsers(query: string, options?: RawAxiosRequestConfig): AxiosPromise<Array<Users>> {
-            return localVarFp.searchUsers(query, options).then((request) => request(axios, basePath));
+        searchUsers(query: string, limit?: number, options?: RawAxiosRequestConfig): AxiosPromise<Array<UserSummary>> {
+            return localVarFp.searchUsers(query, limit, options).then((request) => request(axios, basePath));
         },
         /**
          * 
@@ -577,22 +614,26 @@ export class ContactControllerApi extends BaseAPI {
 
     /**
      * 
+     * @param {string} [after] 
+     * @param {number} [limit] 
      * @param {*} [options] Override http request option.
      * @throws {RequiredError}
      * @memberof ContactControllerApi
      */
-    public getContacts(options?: RawAxiosRequestConfig) {
-        return ContactControllerApiFp(this.configuration).getContacts(options).then((request) => request(this.axios, this.basePath));
+    public getContacts(after?: string, limit?: number, options?: RawAxiosRequestConfig) {
+        return ContactControllerApiFp(this.configuration).getContacts(after, limit, options).then((request) => request(this.axios, this.basePath));
     }
 
     /**
      * 
+     * @param {number} [before] 
+     * @param {number} [limit] 
      * @param {*} [options] Override http request option.
      * @throws {RequiredError}
      * @memberof ContactControllerApi
      */
-    public getPendingFriendRequests(options?: RawAxiosRequestConfig) {
-        return ContactControllerApiFp(this.configuration).getPendingFriendRequests(options).then((request) => request(this.axios, this.basePath));
+    public getPendingFriendRequests(before?: number, limit?: number, options?: RawAxiosRequestConfig) {
+        return ContactControllerApiFp(this.configuration).getPendingFriendRequests(before, limit, options).then((request) => request(this.axios, this.basePath));
     }
 
     /**
@@ -619,12 +660,13 @@ export class ContactControllerApi extends BaseAPI {
     /**
      * 
      * @param {string} query 
+     * @param {number} [limit] 
      * @param {*} [options] Override http request option.
      * @throws {RequiredError}
      * @memberof ContactControllerApi
      */
-    public searchUsers(query: string, options?: RawAxiosRequestConfig) {
-        return ContactControllerApiFp(this.configuration).searchUsers(query, options).then((request) => request(this.axios, this.basePath));
+    public searchUsers(query: string, limit?: number, options?: RawAxiosRequestConfig) {
+        return ContactControllerApiFp(this.configuration).searchUsers(query, limit, options).then((request) => request(this.axios, this.basePath));
     }
 
     /**
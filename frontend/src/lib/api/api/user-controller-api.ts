@@ -27,8 +27,6 @@ import type { LoginRequest } from '../models';
 import type { UserClientDto } from '../models';
 // @ts-ignore
 import type { UserRegisterRequest } from '../models';
-// @ts-ignore
-import type { Users } from '../models';
 /**
  * UserControllerApi - axios parameter creator
  * @export
@@ -209,7 +207,7 @@ export const UserControllerApiFp = function(configuration?: Configuration) {
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        async register(userRegisterRequest: UserRegisterRequest, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<Users>> {
+        async register(userRegisterRequest: UserRegisterRequest, options?: RawAxiosRequestConfig): Promise<(axios?: AxiosInstance, basePath?: string) => AxiosPromise<UserClientDto>> {
             const localVarAxiosArgs = await localVarAxiosParamCreator.register(userRegisterRequest, options);
             const localVarOperationServerIndex = configuration?.serverIndex ?? 0;
             const localVarOperationServerBasePath = operationServerMap['UserControllerApi.register']?.[localVarOperationServerIndex]?.url;
@@ -260,7 +258,7 @@ export const UserControllerApiFactory = function (configuration?: Configuration,
          * @param {*} [options] Override http request option.
          * @throws {RequiredError}
          */
-        register(userRegisterRequest: UserRegisterRequest, options?: RawAxiosRequestConfig): AxiosPromise<Users> {
+        register(userRegisterRequest: UserRegisterRequest, options?: RawAxiosRequestConfig): AxiosPromise<UserClientDto> {
             return localVarFp.register(userRegisterRequest, options).then((request) => request(axios, basePath));
         },
         /**
@@ -0,0 +1,45 @@
+/* tslint:disable */
+/* eslint-disable */
+/**
+ * OpenAPI definition
+ * No description provided (generated by Openapi Generator https://github.com/openapitools/openapi-generator)
+ *
+ * The version of the OpenAPI document: v0
+ * 
+ *
+ * NOTE: This class is auto generated by OpenAPI Generator (https://openapi-generator.tech).
+ * https://openapi-generator.tech
+ * Do not edit the class manually.
+ */
+
+
+// May contain unused imports in some cases
+// @ts-ignore
+import type { ChatMessage } from './chat-message';
+
+/**
+ * 
+ * @export
+ * @interface ChatMessagePage
+ */
+export interface ChatMessagePage {
+    /**
+     * 
+     * @type {Array<ChatMessage>}
+     * @memberof ChatMessagePage
+     */
+    'messages': Array<ChatMessage>;
+    /**
+     * 
+     * @type {number}
+     * @memberof ChatMessagePage
+     */
+    'olderCursor'?: number;
+    /**
+     * 
+     * @type {number}
+     * @memberof ChatMessagePage
+     */
+    'newerCursor'?: number;
+}
+
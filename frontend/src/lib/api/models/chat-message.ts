@@ -1,3 +1,17 @@
+/* tslint:disable */
+/* eslint-disable */
+/**
+ * OpenAPI definition
+ * No description provided (generated by Openapi Generator https://github.com/openapitools/openapi-generator)
+ *
+ * The version of the OpenAPI document: v0
+ * 
+ *
+ * NOTE: This class is auto generated by OpenAPI Generator (https://openapi-generator.tech).
+ * https://openapi-generator.tech
+ * Do not edit the class manually.
+ */
+
 
 
 /**
@@ -18,6 +32,12 @@ export interface ChatMessage {
      * @memberof ChatMessage
      */
     'chatId'?: string;
+    /**
+     * 
+     * @type {number}
+     * @memberof ChatMessage
+     */
+    'seq'?: number;
     /**
      * 
      * @type {number}
@@ -36,6 +56,12 @@ export interface ChatMessage {
      * @memberof ChatMessage
      */
     'content'?: string;
+    /**
+     * 
+     * @type {string}
+     * @memberof ChatMessage
+     */
+    'clientMessageId'?: string;
     /**
      * 
      * @type {string}
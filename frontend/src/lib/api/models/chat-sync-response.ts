@@ -15,49 +15,31 @@
 
 // May contain unused imports in some cases
 // @ts-ignore
-import type { Users } from './users';
+import type { ChatMessage } from './chat-message';
 
 /**
  * 
  * @export
- * @interface Contact
+ * @interface ChatSyncResponse
  */
-export interface Contact {
+export interface ChatSyncResponse {
     /**
      * 
-     * @type {number}
-     * @memberof Contact
+     * @type {Array<ChatMessage>}
+     * @memberof ChatSyncResponse
      */
-    'id'?: number;
+    'messages': Array<ChatMessage>;
     /**
      * 
-     * @type {Users}
-     * @memberof Contact
+     * @type {{ [key: string]: number; }}
+     * @memberof ChatSyncResponse
      */
-    'user'?: Users;
-    /**
-     * 
-     * @type {Users}
-     * @memberof Contact
-     */
-    'contact'?: Users;
+    'highWaterMarks': { [key: string]: number; };
     /**
      * 
      * @type {boolean}
-     * @memberof Contact
-     */
-    'blocked'?: boolean;
-    /**
-     * 
-     * @type {string}
-     * @memberof Contact
-     */
-    'createdAt'?: string;
-    /**
-     * 
-     * @type {string}
-     * @memberof Contact
+     * @memberof ChatSyncResponse
      */
-    'updatedAt'?: string;
+    'hasMore': boolean;
 }
 
@@ -0,0 +1,39 @@
+/* tslint:disable */
+/* eslint-disable */
+/**
+ * OpenAPI definition
+ * No description provided (generated by Openapi Generator https://github.com/openapitools/openapi-generator)
+ *
+ * The version of the OpenAPI document: v0
+ * 
+ *
+ * NOTE: This class is auto generated by OpenAPI Generator (https://openapi-generator.tech).
+ * https://openapi-generator.tech
+ * Do not edit the class manually.
+ */
+
+
+// May contain unused imports in some cases
+// @ts-ignore
+import type { FirendRequestDTO } from './firend-request-dto';
+
+/**
+ * 
+ * @export
+ * @interface FriendRequestPage
+ */
+export interface FriendRequestPage {
+    /**
+     * 
+     * @type {Array<FirendRequestDTO>}
+     * @memberof FriendRequestPage
+     */
+    'requests': Array<FirendRequestDTO>;
+    /**
+     * 
+     * @type {number}
+     * @memberof FriendRequestPage
+     */
+    'nextCursor'?: number;
+}
+
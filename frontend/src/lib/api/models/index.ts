@@ -1,12 +1,19 @@
 export * from './accept-contact-request';
 export * from './add-contact-request';
 export * from './chat-message';
-export * from './contact';
+export * from './chat-message-page';
+export * from './chat-sync-response';
 export * from './contact-dto';
+export * from './contact-page';
 export * from './firend-request-dto';
+export * from './friend-request-page';
 export * from './login-request';
+export * from './read-ack-request';
+export * from './retention-request';
+export * from './sync-ack-request';
 export * from './user-client-dto';
 export * from './user-register-request';
+export * from './user-summary';
 export * from './users';
 export * from './x3dh-key-bundle-response';
 export * from './x3dh-key-bundle-upload-request';
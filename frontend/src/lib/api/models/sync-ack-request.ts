@@ -0,0 +1,36 @@
+/* tslint:disable */
+/* eslint-disable */
+/**
+ * OpenAPI definition
+ * No description provided (generated by Openapi Generator https://github.com/openapitools/openapi-generator)
+ *
+ * The version of the OpenAPI document: v0
+ * 
+ *
+ * NOTE: This class is auto generated by OpenAPI Generator (https://openapi-generator.tech).
+ * https://openapi-generator.tech
+ * Do not edit the class manually.
+ */
+
+
+
+/**
+ * 
+ * @export
+ * @interface SyncAckRequest
+ */
+export interface SyncAckRequest {
+    /**
+     * 
+     * @type {string}
+     * @memberof SyncAckRequest
+     */
+    'deviceId': string;
+    /**
+     * 
+     * @type {{ [key: string]: number; }}
+     * @memberof SyncAckRequest
+     */
+    'highWaterMarks': { [key: string]: number; };
+}
+
@@ -13,9 +13,6 @@
  */
 
 
-// May contain unused imports in some cases
-// @ts-ignore
-import type { Contact } from './contact';
 
 /**
  * 
@@ -47,18 +44,6 @@ export interface Users {
      * @memberof Users
      */
     'email': string;
-    /**
-     * 
-     * @type {Array<Contact>}
-     * @memberof Users
-     */
-    'contacts'?: Array<Contact>;
-    /**
-     * 
-     * @type {Array<Contact>}
-     * @memberof Users
-     */
-    'addedBy'?: Array<Contact>;
     /**
      * 
      * @type {string}
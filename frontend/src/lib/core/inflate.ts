@@ -0,0 +1,42 @@
+/**
+ * Inflates the binary messages of a socket opened with ?compression=deflate
+ * before they reach its onmessage handler. The server sends STOMP batches
+ * above its threshold as zlib compressed binary messages and everything else
+ * as text; messages are handed on in the order they arrived.
+ * @param socket WebSocket of the native endpoint, binaryType 'arraybuffer'
+ * @returns the same socket
+ */
+export function inflateMessages(socket: WebSocket): WebSocket {
+	let onMessage: ((event: MessageEvent) => void) | null = null;
+	// Inflating is asynchronous, later messages wait for the earlier ones
+	let pending = Promise.resolve();
+
+	socket.addEventListener('message', (event: MessageEvent) => {
+		pending = pending
+			.then(async () => {
+				const data = event.data instanceof ArrayBuffer ? await inflate(event.data) : event.data;
+				onMessage?.call(socket, new MessageEvent('message', { data }));
+			})
+			.catch((e) => {
+				// The STOMP stream is broken from here on, reconnect
+				console.error('Failed to inflate WebSocket message:', e);
+				socket.close();
+			});
+	});
+
+	// The STOMP client assigns its handler here, it gets the inflated messages instead
+	Object.defineProperty(socket, 'onmessage', {
+		get: () => onMessage,
+		set: (handler: ((event: MessageEvent) => void) | null) => {
+			onMessage = handler;
+		},
+		configurable: true
+	});
+	return socket;
+}
+
+async function inflate(data: ArrayBuffer): Promise<ArrayBuffer> {
+	// 'deflate' is the zlib format, as written by java.util.zip.Deflater
+	const stream = new Blob([data]).stream().pipeThrough(new DecompressionStream('deflate'));
+	return new Response(stream).arrayBuffer();
+}
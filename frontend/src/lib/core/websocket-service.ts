@@ -1,20 +1,75 @@
 import { Client } from '@stomp/stompjs';
 import SockJS from 'sockjs-client';
 import { applyPadding, removePadding } from './padme';
+import { inflateMessages } from './inflate';
 
-const WEBSOCKET_URL = 'http://localhost:8080/ws-chat';
+const WEBSOCKET_URL = 'ws://localhost:8080/ws-chat-native';
+// SockJS fallback, used when a plain WebSocket can't be opened
+const SOCKJS_URL = 'http://localhost:8080/ws-chat';
+// Larger batches then arrive compressed, when the server has compression enabled
+const COMPRESSION_SUPPORTED = typeof DecompressionStream !== 'undefined';
+// Notifications are redelivered until acknowledged, remember this many to drop the repeats
+const MAX_SEEN_NOTIFICATIONS = 1000;
+
+// The chat layout opens one connection and shares it with its pages under this key
+export const WEBSOCKET_CONTEXT = 'websocket';
+
+// Pushed when a friend request of the user is sent or accepted
+export interface FriendRequestEvent {
+	requestId: number;
+	username: string;
+	status: 'PENDING' | 'ACCEPTED' | 'REJECTED';
+	pendingCount: number;
+}
+
+// Pushed when a mutual contact comes online or goes offline
+export interface PresenceUpdate {
+	userId: number;
+	online: boolean;
+}
+
+// Pushed to the sender once a message is stored
+export interface MessageAck {
+	clientMessageId: string;
+	id: number;
+	chatId: string;
+	seq: number;
+}
 
 export class WebSocketService {
 	private client: Client | null = null;
 	private messageQueue: { destination: string; body: any }[] = [];
+	// Published messages by clientMessageId until the server acks them, resent after a reconnect
+	private unacknowledged = new Map<string, { destination: string; body: any }>();
 	private isConnected = false;
 	private userId: number | undefined = undefined;
+	private useSockJS = typeof WebSocket === 'undefined';
+	// `${chatId}:${seq}` of the notifications already handed to onMessage, oldest first
+	private seenNotifications = new Set<string>();
+	private onMessage: ((message: any) => void) | null = null;
+	private onFriendRequest: ((event: FriendRequestEvent) => void) | null = null;
+	private onPresence: ((update: PresenceUpdate) => void) | null = null;
 
 	constructor(userId: number) {
 		this.userId = userId;
 	}
 
-	async connect(onMessage: (message: any) => void): Promise<void> {
+	/**
+	 * Receive chat messages, null while no page shows them
+	 */
+	setMessageHandler(onMessage: ((message: any) => void) | null) {
+		this.onMessage = onMessage;
+	}
+
+	setFriendRequestHandler(onFriendRequest: ((event: FriendRequestEvent) => void) | null) {
+		this.onFriendRequest = onFriendRequest;
+	}
+
+	setPresenceHandler(onPresence: ((update: PresenceUpdate) => void) | null) {
+		this.onPresence = onPresence;
+	}
+
+	async connect(): Promise<void> {
 		if (typeof window === 'undefined') {
 			return Promise.resolve();
 		}
@@ -22,7 +77,12 @@ export class WebSocketService {
 		return new Promise<void>((resolve, reject) => {
 			this.client = new Client({
 				webSocketFactory: () => {
-					return new SockJS(WEBSOCKET_URL);
+					if (this.useSockJS) {
+						return new SockJS(SOCKJS_URL);
+					}
+					return COMPRESSION_SUPPORTED
+						? inflateMessages(new WebSocket(`${WEBSOCKET_URL}?compression=deflate`))
+						: new WebSocket(WEBSOCKET_URL);
 				},
 				connectHeaders: {},
 				reconnectDelay: 10000,
@@ -51,7 +111,7 @@ export class WebSocketService {
 					}, 5000);
 				};
 
-				this.client.subscribe(`/user/${this.userId}/queue/messages`, (message: any) => {
+				this.client.subscribe('/user/queue/messages', (message: any) => {
 					console.log('RECEIVED MESSAGE:', message.body);
 					try {
 						const parsed = JSON.parse(message.body);
@@ -61,6 +121,13 @@ export class WebSocketService {
 							console.log('Received dummy message - ignoring for UI:', parsed);
 							return; // Don't process dummy messages in the UI
 						}
+
+						// Acknowledge every copy, the ack of an earlier one may have been lost
+						this.acknowledge(parsed.chatId, parsed.seq);
+						if (this.isDuplicate(parsed.chatId, parsed.seq)) {
+							console.log('Dropping redelivered message:', parsed.chatId, parsed.seq);
+							return;
+						}
 						
 						const byteArray = Uint8Array.from(atob(parsed.content), c => c.charCodeAt(0));
 						//decryption before unpadding
@@ -75,12 +142,44 @@ export class WebSocketService {
 						};
 
 						console.log('PARSED MESSAGE:', parsedMessage);
-						onMessage(parsedMessage);
+						this.onMessage?.(parsedMessage);
 					} catch (e) {
 						console.error('Error parsing message:', e);
 					}
 				});
 
+				// Replaces polling the pending request count
+				this.client.subscribe('/user/queue/friend-requests', (message: any) => {
+					try {
+						this.onFriendRequest?.(JSON.parse(message.body));
+					} catch (e) {
+						console.error('Error parsing friend request event:', e);
+					}
+				});
+
+				this.client.subscribe('/user/queue/presence', (message: any) => {
+					try {
+						this.onPresence?.(JSON.parse(message.body));
+					} catch (e) {
+						console.error('Error parsing presence update:', e);
+					}
+				});
+
+				// The message is stored, stop resending it
+				this.client.subscribe('/user/queue/acks', (message: any) => {
+					try {
+						const ack: MessageAck = JSON.parse(message.body);
+						this.unacknowledged.delete(ack.clientMessageId);
+					} catch (e) {
+						console.error('Error parsing message ack:', e);
+					}
+				});
+
+				// The previous connection may have dropped them, the server ignores repeats by clientMessageId
+				for (const { destination, body } of this.unacknowledged.values()) {
+					this.publish(destination, body);
+				}
+
 				// Process any queued messages
 				while (this.messageQueue.length > 0) {
 					const { destination, body } = this.messageQueue.shift()!;
@@ -97,6 +196,10 @@ export class WebSocketService {
 
 			this.client.onWebSocketClose = (event: any) => {
 				console.error('WebSocket closed:', event);
+				if (!this.isConnected && !this.useSockJS) {
+					console.log('WebSocket connection failed, falling back to SockJS');
+					this.useSockJS = true;
+				}
 				this.isConnected = false;
 			};
 
@@ -126,13 +229,17 @@ export class WebSocketService {
 			return;
 		}
 
+		// One id per message, a queued message keeps it for its retries
+		if (!body.clientMessageId) {
+			body = { ...body, clientMessageId: crypto.randomUUID() };
+		}
+
 		if (!this.isConnected) {
 			console.log('WebSocket not connected, queueing message:', body);
 			this.messageQueue.push({ destination, body });
 			return;
 		}
 
-
 		const plain = new TextEncoder().encode(JSON.stringify(body.content));
 		const padded = applyPadding(plain);
 		const b64 = btoa(String.fromCharCode(...padded));
@@ -145,13 +252,48 @@ export class WebSocketService {
 			isDummy: false // Ensure real user messages are marked as not dummy
 		};
 
-		console.log('SENDING MESSAGE to', destination, ':', messageToSend);
-		this.client.publish({
+		this.unacknowledged.set(messageToSend.clientMessageId, { destination, body: messageToSend });
+		this.publish(destination, messageToSend);
+	}
+
+	private publish(destination: string, message: any) {
+		console.log('SENDING MESSAGE to', destination, ':', message);
+		this.client?.publish({
 			destination,
-			body: JSON.stringify(messageToSend)
+			body: JSON.stringify(message)
+		});
+	}
+
+	/**
+	 * Confirm a notification, so the server stops redelivering it
+	 */
+	private acknowledge(chatId: string | undefined, seq: number | undefined) {
+		if (!this.client || chatId == null || seq == null) {
+			return;
+		}
+		this.client.publish({
+			destination: '/app/chat.ack',
+			body: JSON.stringify({ chatId, seq })
 		});
 	}
 
+	private isDuplicate(chatId: string | undefined, seq: number | undefined): boolean {
+		if (chatId == null || seq == null) {
+			return false;
+		}
+		const key = `${chatId}:${seq}`;
+		if (this.seenNotifications.has(key)) {
+			return true;
+		}
+		this.seenNotifications.add(key);
+		if (this.seenNotifications.size > MAX_SEEN_NOTIFICATIONS) {
+			// Sets iterate in insertion order
+			const oldest = this.seenNotifications.values().next().value as string;
+			this.seenNotifications.delete(oldest);
+		}
+		return false;
+	}
+
 	disconnect() {
 		console.log('Disconnecting WebSocket...');
 		if (this.client?.active) {
@@ -1,15 +1,28 @@
+import type { ContactDTO } from '$lib/api';
 import { ContactService } from '$lib/core/api-services';
 import { error, redirect } from '@sveltejs/kit';
 import type { LayoutServerLoad } from './$types';
 
+// The sidebar lists every contact, the endpoint returns them a page at a time
+async function loadAllContacts(): Promise<ContactDTO[]> {
+	const contacts: ContactDTO[] = [];
+	let after: string | undefined = undefined;
+	do {
+		const { data } = await ContactService.getContacts(after);
+		contacts.push(...data.contacts);
+		after = data.nextCursor;
+	} while (after);
+	return contacts;
+}
+
 export const load = (async ({ locals }) => {
 	try {
-		const [contactsResponse, requestsCountResponse] = await Promise.all([
-			ContactService.getContacts(),
+		const [contacts, requestsCountResponse] = await Promise.all([
+			loadAllContacts(),
 			ContactService.getPendingFriendRequestsCount()
 		]);
 
-		locals.contacts = contactsResponse.data;
+		locals.contacts = contacts;
 
 		if (!locals.user) {
 			throw redirect(303, '/auth/login');
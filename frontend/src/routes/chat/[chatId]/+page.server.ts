@@ -4,22 +4,30 @@ import { removePadding } from '$lib/core/padme';
 import { MOCK_CONTACTS } from '$lib/mock-data/contacts';
 import type { PageServerLoad } from './$types';
 
-export const load = (async ({ params, locals }) => {
+export const load = (async ({ params, locals, url }) => {
 	const contactId = params.chatId ? parseInt(params.chatId) : undefined;
 	const userId = locals.user?.id;
+	// Page cursors, the newest page is loaded without them
+	const before = url.searchParams.get('before');
+	const after = url.searchParams.get('after');
 	console.log('id: ', contactId);
 	console.log('userId: ', userId);
 
 	if (userId && contactId) {
 		const [chatResponse, contactResponse] = await Promise.all([
-			ChatService.findChatMessages(contactId, userId),
+			ChatService.findChatMessages(
+				contactId,
+				userId,
+				before ? parseInt(before) : undefined,
+				after ? parseInt(after) : undefined
+			),
 			ContactService.getContactData(contactId)
 		]);
 		console.log('received data: ', chatResponse.data);
 		console.log('received Contact Data: ', contactResponse.data);
 
 		//decrypt before unpadding
-		const processedMessages = chatResponse.data.map((message: any) => {
+		const processedMessages = chatResponse.data.messages.map((message: any) => {
 			const byteArray = Uint8Array.from(atob(message.content), (c) => c.charCodeAt(0));
             const unpadded = removePadding(byteArray);
             const json = new TextDecoder().decode(unpadded);
@@ -29,9 +37,21 @@ export const load = (async ({ params, locals }) => {
             };
 		});
 
+		// Opening the chat reads it up to the newest message shown, marks only move forwards
+		const newest = chatResponse.data.messages.at(-1);
+		if (newest?.seq != null) {
+			try {
+				await ChatService.markRead(contactId, { seq: newest.seq });
+			} catch (err: any) {
+				console.error('Failed to mark chat read: ', err.message);
+			}
+		}
+
 		return {
 			contactData: contactResponse.data,
-			messages: processedMessages
+			messages: processedMessages,
+			olderCursor: chatResponse.data.olderCursor,
+			newerCursor: chatResponse.data.newerCursor
 		};
 	} else {
 		const notFoundContact: ContactDTO = {
@@ -40,12 +60,15 @@ export const load = (async ({ params, locals }) => {
 			username: 'Not Found',
 			lastMessage: 'Not Found',
 			online: false,
-			blocked: false
+			blocked: false,
+			unread: 0
 		};
 
 		return {
 			contactData: notFoundContact,
-			messages: []
+			messages: [],
+			olderCursor: undefined,
+			newerCursor: undefined
 		};
 	}
 }) satisfies PageServerLoad;
@@ -3,13 +3,20 @@ import { ContactService } from '$lib/core/api-services';
 import { error, fail } from '@sveltejs/kit';
 import type { PageServerLoad } from './$types';
 
-export const load = (async () => {
-	let requests: FirendRequestDTO[] = [];
+export const load = (async ({ depends }) => {
+	// Reloaded when a friend request arrives over the WebSocket
+	depends('app:friend-requests');
 
-	try {
-		const { data } = await ContactService.getPendingFriendRequests();
+	const requests: FirendRequestDTO[] = [];
 
-		requests = data;
+	try {
+		// Pages go from the newest request backwards
+		let before: number | undefined = undefined;
+		do {
+			const { data } = await ContactService.getPendingFriendRequests(before);
+			requests.push(...data.requests);
+			before = data.nextCursor;
+		} while (before);
 	} catch (err: any) {
 		return error(err.status, { message: err.message });
 	}